@@ -0,0 +1,481 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
+import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.analysis.constprop.Value;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.graph.icfg.CallEdge;
+import pascal.taie.analysis.graph.icfg.CallToReturnEdge;
+import pascal.taie.analysis.graph.icfg.ICFG;
+import pascal.taie.analysis.graph.icfg.ICFGEdge;
+import pascal.taie.analysis.graph.icfg.NormalEdge;
+import pascal.taie.ir.exp.ArithmeticExp;
+import pascal.taie.ir.exp.BinaryExp;
+import pascal.taie.ir.exp.IntLiteral;
+import pascal.taie.ir.exp.LValue;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.AssignLiteral;
+import pascal.taie.ir.stmt.Binary;
+import pascal.taie.ir.stmt.Copy;
+import pascal.taie.ir.stmt.DefinitionStmt;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.language.classes.JMethod;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * IDE (Interprocedural Distributive Environment) solver for linear constant
+ * propagation. Instead of whole {@link CPFact}s, the solver propagates
+ * micro-functions ({@link EdgeFunction}) over single variables on the
+ * exploded super graph of the ICFG, and memoizes end summaries of callees.
+ * <p>
+ * Variable {@code null} stands for the zero fact (Λ) of the exploded graph.
+ * Only statements of the form x = c, x = y, x = a * y + b are modeled
+ * precisely, other int definitions make the variable NAC.
+ */
+class IDESolver {
+
+    private static final Var ZERO = null;
+
+    private record PathEdge(Var source, Stmt node, Var target) {
+    }
+
+    private record CallFact(Stmt callSite, Var fact) {
+    }
+
+    private final ConstantPropagation cp;
+
+    private final ICFG<JMethod, Stmt> icfg;
+
+    /**
+     * node -> target fact -> source fact at method start -> jump function.
+     */
+    private final Map<Stmt, Map<Var, Map<Var, EdgeFunction>>> jumpFns = new HashMap<>();
+
+    /**
+     * method -> source fact at method start -> fact at exit -> summary function.
+     */
+    private final Map<JMethod, Map<Var, Map<Var, EdgeFunction>>> endSummaries = new HashMap<>();
+
+    /**
+     * method -> fact at method start -> call sites and facts flowing into it.
+     */
+    private final Map<JMethod, Map<Var, Set<CallFact>>> incoming = new HashMap<>();
+
+    /**
+     * Int variables which are defined exactly once by a literal, e.g.,
+     * temporary variables holding constant operands.
+     */
+    private final Map<JMethod, Map<Var, Integer>> literalVars = new HashMap<>();
+
+    private final Queue<PathEdge> workList = new ArrayDeque<>();
+
+    private final Set<PathEdge> inQueue = new HashSet<>();
+
+    IDESolver(ConstantPropagation cp, ICFG<JMethod, Stmt> icfg) {
+        this.cp = cp;
+        this.icfg = icfg;
+    }
+
+    DataflowResult<Stmt, CPFact> solve() {
+        icfg.entryMethods().forEach(method -> {
+            Stmt entry = icfg.getEntryOf(method);
+            propagate(ZERO, entry, ZERO, EdgeFunction.IDENTITY);
+            for (Var param : method.getIR().getParams()) {
+                if (ConstantPropagation.canHoldInt(param)) {
+                    propagate(ZERO, entry, param, EdgeFunction.ALL_NAC);
+                }
+            }
+        });
+        computeJumpFunctions();
+        return computeValues();
+    }
+
+    private void propagate(Var source, Stmt node, Var target, EdgeFunction f) {
+        if (f.equals(EdgeFunction.ALL_TOP)) {
+            return;
+        }
+        Map<Var, EdgeFunction> sources = jumpFns.computeIfAbsent(node, n -> new HashMap<>())
+                .computeIfAbsent(target, t -> new HashMap<>());
+        EdgeFunction old = sources.get(source);
+        EdgeFunction meet = old == null ? f : old.meetWith(f);
+        if (!meet.equals(old)) {
+            sources.put(source, meet);
+            PathEdge pathEdge = new PathEdge(source, node, target);
+            if (inQueue.add(pathEdge)) {
+                workList.add(pathEdge);
+            }
+        }
+    }
+
+    /**
+     * Phase I: computes jump functions and end summaries.
+     */
+    private void computeJumpFunctions() {
+        while (!workList.isEmpty()) {
+            PathEdge pathEdge = workList.poll();
+            inQueue.remove(pathEdge);
+            Var d1 = pathEdge.source();
+            Stmt node = pathEdge.node();
+            Var d2 = pathEdge.target();
+            EdgeFunction f = jumpFns.get(node).get(d2).get(d1);
+            JMethod method = icfg.getContainingMethodOf(node);
+
+            for (ICFGEdge<Stmt> edge : icfg.getOutEdgesOf(node)) {
+                Stmt target = edge.getTarget();
+                if (edge instanceof NormalEdge) {
+                    normalFlow(method, node, d2, (d3, g) ->
+                            propagate(d1, target, d3, f.andThen(g)));
+                } else if (edge instanceof CallToReturnEdge) {
+                    if (d2 == ZERO || !d2.equals(((Invoke) node).getLValue())) {
+                        propagate(d1, target, d2, f);
+                    }
+                } else if (edge instanceof CallEdge<Stmt> callEdge) {
+                    JMethod callee = callEdge.getCallee();
+                    for (Var d3 : callFlow((Invoke) node, d2, callee)) {
+                        propagate(d3, target, d3, EdgeFunction.IDENTITY);
+                        incoming.computeIfAbsent(callee, m -> new HashMap<>())
+                                .computeIfAbsent(d3, d -> new HashSet<>())
+                                .add(new CallFact(node, d2));
+                        // apply the memoized summary of the callee
+                        endSummaries.getOrDefault(callee, Collections.emptyMap())
+                                .getOrDefault(d3, Collections.emptyMap())
+                                .forEach((d4, summary) -> returnTo(
+                                        (Invoke) node, callee, d4, d1, f.andThen(summary)));
+                    }
+                }
+            }
+
+            if (node == icfg.getExitOf(method)) {
+                endSummaries.computeIfAbsent(method, m -> new HashMap<>())
+                        .computeIfAbsent(d1, d -> new HashMap<>())
+                        .put(d2, f);
+                Set<CallFact> callers = incoming.getOrDefault(method, Collections.emptyMap())
+                        .getOrDefault(d1, Collections.emptySet());
+                for (CallFact caller : List.copyOf(callers)) {
+                    Map<Var, EdgeFunction> callerFns = jumpFns.get(caller.callSite())
+                            .get(caller.fact());
+                    new HashMap<>(callerFns).forEach((d0, f0) -> returnTo(
+                            (Invoke) caller.callSite(), method, d2, d0, f0.andThen(f)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Propagates fact d4 at the exit of callee to the return sites of callSite.
+     */
+    private void returnTo(Invoke callSite, JMethod callee, Var d4, Var d0, EdgeFunction f) {
+        Var lVar = callSite.getLValue();
+        Var d5;
+        if (d4 == ZERO) {
+            d5 = ZERO;
+        } else if (lVar != null && ConstantPropagation.canHoldInt(lVar)
+                && callee.getIR().getReturnVars().contains(d4)) {
+            d5 = lVar;
+        } else {
+            return;
+        }
+        for (Stmt returnSite : icfg.getReturnSitesOf(callSite)) {
+            propagate(d0, returnSite, d5, f);
+        }
+    }
+
+    /**
+     * @return the facts at the entry of callee which fact d at callSite flows to.
+     */
+    private List<Var> callFlow(Invoke callSite, Var d, JMethod callee) {
+        List<Var> result = new ArrayList<>();
+        if (d == ZERO) {
+            result.add(ZERO);
+            return result;
+        }
+        List<Var> args = callSite.getInvokeExp().getArgs();
+        List<Var> params = callee.getIR().getParams();
+        for (int i = 0; i < params.size(); i++) {
+            if (args.get(i).equals(d) && ConstantPropagation.canHoldInt(params.get(i))) {
+                result.add(params.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Flow function of a non-call statement.
+     *
+     * @param out consumer of the target facts and their edge functions
+     */
+    private void normalFlow(JMethod method, Stmt stmt, Var d, BiConsumer<Var, EdgeFunction> out) {
+        Optional<LValue> def = stmt.getDef();
+        if (!(stmt instanceof DefinitionStmt<?, ?>) || def.isEmpty()
+                || !(def.get() instanceof Var lVar)
+                || !ConstantPropagation.canHoldInt(lVar)) {
+            out.accept(d, EdgeFunction.IDENTITY);
+            return;
+        }
+        if (d == ZERO) {
+            out.accept(ZERO, EdgeFunction.IDENTITY);
+        } else if (!d.equals(lVar)) {
+            out.accept(d, EdgeFunction.IDENTITY);
+        }
+        Map<Var, Integer> literals = getLiteralVars(method);
+        if (stmt instanceof AssignLiteral assign) {
+            if (d == ZERO) {
+                out.accept(lVar, EdgeFunction.constant(
+                        ((IntLiteral) assign.getRValue()).getValue()));
+            }
+        } else if (stmt instanceof Copy copy) {
+            if (d != ZERO && d.equals(copy.getRValue())) {
+                out.accept(lVar, EdgeFunction.IDENTITY);
+            }
+        } else if (stmt instanceof Binary binary) {
+            BinaryExp exp = binary.getRValue();
+            Var y = exp.getOperand1();
+            Var z = exp.getOperand2();
+            Integer c1 = literals.get(y);
+            Integer c2 = literals.get(z);
+            if (c1 != null && c2 != null) {
+                if (d == ZERO) {
+                    CPFact operands = new CPFact();
+                    operands.update(y, Value.makeConstant(c1));
+                    operands.update(z, Value.makeConstant(c2));
+                    Value value = ConstantPropagation.evaluate(exp, operands);
+                    if (value.isConstant()) {
+                        out.accept(lVar, EdgeFunction.constant(value.getConstant()));
+                    }
+                }
+                return;
+            }
+            EdgeFunction linear = linearOf(exp, c1, c2);
+            if (linear == null) {
+                if (d == ZERO) {
+                    out.accept(lVar, EdgeFunction.ALL_NAC);
+                }
+            } else if (d != ZERO && d.equals(c1 == null ? y : z)) {
+                out.accept(lVar, linear);
+            }
+        } else if (d == ZERO) {
+            out.accept(lVar, EdgeFunction.ALL_NAC);
+        }
+    }
+
+    /**
+     * @return the linear function of the non-constant operand of exp,
+     * or null if exp is not linear.
+     */
+    private static EdgeFunction linearOf(BinaryExp exp, Integer c1, Integer c2) {
+        if (!(exp instanceof ArithmeticExp arithmetic) || (c1 == null) == (c2 == null)) {
+            return null;
+        }
+        return switch (arithmetic.getOperator()) {
+            case ADD -> EdgeFunction.linear(1, c1 != null ? c1 : c2);
+            case SUB -> c1 != null ? EdgeFunction.linear(-1, c1) : EdgeFunction.linear(1, -c2);
+            case MUL -> EdgeFunction.linear(c1 != null ? c1 : c2, 0);
+            default -> null;
+        };
+    }
+
+    private Map<Var, Integer> getLiteralVars(JMethod method) {
+        return literalVars.computeIfAbsent(method, m -> {
+            Map<Var, Integer> defCounts = new HashMap<>();
+            Map<Var, Integer> literals = new HashMap<>();
+            for (Stmt stmt : m.getIR()) {
+                stmt.getDef().ifPresent(def -> {
+                    if (def instanceof Var var) {
+                        defCounts.merge(var, 1, Integer::sum);
+                        if (stmt instanceof AssignLiteral assign
+                                && assign.getRValue() instanceof IntLiteral literal) {
+                            literals.put(var, literal.getValue());
+                        }
+                    }
+                });
+            }
+            literals.keySet().removeIf(var -> defCounts.get(var) > 1
+                    || m.getIR().getParams().contains(var)
+                    || var.equals(m.getIR().getThis()));
+            return literals;
+        });
+    }
+
+    /**
+     * Phase II: computes values at method starts, then values at all nodes.
+     */
+    private DataflowResult<Stmt, CPFact> computeValues() {
+        Map<JMethod, List<Stmt>> callSites = new HashMap<>();
+        for (Stmt stmt : icfg) {
+            if (stmt instanceof Invoke) {
+                callSites.computeIfAbsent(icfg.getContainingMethodOf(stmt),
+                        m -> new ArrayList<>()).add(stmt);
+            }
+        }
+        Map<JMethod, Map<Var, Value>> startValues = new HashMap<>();
+        Queue<JMethod> methods = new ArrayDeque<>();
+        Set<JMethod> queued = new HashSet<>();
+        icfg.entryMethods().forEach(method -> {
+            startValues.computeIfAbsent(method, m -> new HashMap<>()).put(ZERO, Value.getNAC());
+            if (queued.add(method)) {
+                methods.add(method);
+            }
+        });
+        while (!methods.isEmpty()) {
+            JMethod method = methods.poll();
+            queued.remove(method);
+            Map<Var, Value> values = startValues.get(method);
+            for (Stmt callSite : callSites.getOrDefault(method, List.of())) {
+                jumpFns.getOrDefault(callSite, Collections.emptyMap()).forEach((d2, sources) -> {
+                    Value value = applyAll(sources, values);
+                    for (JMethod callee : icfg.getCalleesOf(callSite)) {
+                        Map<Var, Value> calleeValues = startValues.computeIfAbsent(
+                                callee, m -> new HashMap<>());
+                        for (Var d3 : callFlow((Invoke) callSite, d2, callee)) {
+                            Value old = calleeValues.get(d3);
+                            Value meet = old == null ? value : cp.meetValue(old, value);
+                            if (!meet.equals(old)) {
+                                calleeValues.put(d3, meet);
+                                if (queued.add(callee)) {
+                                    methods.add(callee);
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+        }
+
+        DataflowResult<Stmt, CPFact> result = new DataflowResult<>();
+        for (Stmt node : icfg) {
+            JMethod method = icfg.getContainingMethodOf(node);
+            Map<Var, Value> values = startValues.getOrDefault(method, Collections.emptyMap());
+            Map<Var, Map<Var, EdgeFunction>> fns = jumpFns.getOrDefault(node, Collections.emptyMap());
+            CPFact in = new CPFact();
+            fns.forEach((d2, sources) -> {
+                if (d2 != ZERO) {
+                    in.update(d2, applyAll(sources, values));
+                }
+            });
+            CPFact out;
+            if (icfg.isCallSite(node)) {
+                out = in.copy();
+            } else {
+                out = new CPFact();
+                for (Var d : fns.keySet()) {
+                    Value value = d == ZERO ? Value.getNAC() : in.get(d);
+                    normalFlow(method, node, d, (d3, g) -> {
+                        if (d3 != ZERO) {
+                            out.update(d3, cp.meetValue(out.get(d3), g.apply(value)));
+                        }
+                    });
+                }
+            }
+            result.setInFact(node, in);
+            result.setOutFact(node, out);
+        }
+        return result;
+    }
+
+    /**
+     * @return the meet of jump functions applied on the values at method start.
+     */
+    private Value applyAll(Map<Var, EdgeFunction> sources, Map<Var, Value> startValues) {
+        Value value = Value.getUndef();
+        for (Map.Entry<Var, EdgeFunction> entry : sources.entrySet()) {
+            Value start = startValues.getOrDefault(entry.getKey(), Value.getUndef());
+            value = cp.meetValue(value, entry.getValue().apply(start));
+        }
+        return value;
+    }
+}
+
+/**
+ * Micro-function of linear constant propagation, i.e., λx.UNDEF, λx.NAC,
+ * or λx.a*x+b (constant functions have a == 0).
+ */
+record EdgeFunction(Kind kind, int a, int b) {
+
+    enum Kind {
+        TOP, NAC, LINEAR
+    }
+
+    static final EdgeFunction ALL_TOP = new EdgeFunction(Kind.TOP, 0, 0);
+
+    static final EdgeFunction ALL_NAC = new EdgeFunction(Kind.NAC, 0, 0);
+
+    static final EdgeFunction IDENTITY = new EdgeFunction(Kind.LINEAR, 1, 0);
+
+    static EdgeFunction linear(int a, int b) {
+        return new EdgeFunction(Kind.LINEAR, a, b);
+    }
+
+    static EdgeFunction constant(int c) {
+        return linear(0, c);
+    }
+
+    Value apply(Value value) {
+        return switch (kind) {
+            case TOP -> Value.getUndef();
+            case NAC -> Value.getNAC();
+            case LINEAR -> {
+                if (a == 0) {
+                    yield Value.makeConstant(b);
+                } else if (value.isConstant()) {
+                    yield Value.makeConstant(a * value.getConstant() + b);
+                } else {
+                    yield value;
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the composed function g(this(x)).
+     */
+    EdgeFunction andThen(EdgeFunction g) {
+        if (g.kind != Kind.LINEAR || g.a == 0 || kind != Kind.LINEAR) {
+            return g.kind != Kind.LINEAR || g.a == 0 ? g : this;
+        }
+        return linear(g.a * a, g.a * b + g.b);
+    }
+
+    EdgeFunction meetWith(EdgeFunction other) {
+        if (kind == Kind.TOP || this.equals(other)) {
+            return other;
+        }
+        if (other.kind == Kind.TOP) {
+            return this;
+        }
+        return ALL_NAC;
+    }
+}
@@ -23,29 +23,56 @@
 package pascal.taie.analysis.dataflow.inter;
 
 import org.checkerframework.checker.units.qual.A;
+import pascal.taie.World;
 import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
 import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
 import pascal.taie.analysis.dataflow.analysis.constprop.Value;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.dataflow.fact.MapFact;
 import pascal.taie.analysis.graph.cfg.CFG;
 import pascal.taie.analysis.graph.cfg.CFGBuilder;
 import pascal.taie.analysis.graph.icfg.CallEdge;
 import pascal.taie.analysis.graph.icfg.CallToReturnEdge;
+import pascal.taie.analysis.graph.icfg.ICFG;
+import pascal.taie.analysis.graph.icfg.ICFGBuilder;
+import pascal.taie.analysis.graph.icfg.ICFGEdge;
 import pascal.taie.analysis.graph.icfg.NormalEdge;
 import pascal.taie.analysis.graph.icfg.ReturnEdge;
 import pascal.taie.config.AnalysisConfig;
 import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.BinaryExp;
+import pascal.taie.ir.exp.IntLiteral;
 import pascal.taie.ir.exp.InvokeExp;
 import pascal.taie.ir.exp.LValue;
 import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.AssignLiteral;
+import pascal.taie.ir.stmt.Binary;
+import pascal.taie.ir.stmt.Copy;
 import pascal.taie.ir.stmt.Invoke;
 import pascal.taie.ir.stmt.Stmt;
 import pascal.taie.language.classes.JMethod;
 
 import java.sql.Array;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of interprocedural constant propagation for int values.
@@ -55,13 +82,83 @@ public class InterConstantPropagation extends
 
     public static final String ID = "inter-constprop";
 
+    /**
+     * Default maximum number of sub-queries explored by {@link #valueAt}.
+     */
+    private static final int DEFAULT_QUERY_BUDGET = 10000;
+
     private final ConstantPropagation cp;
 
+    private DemandSolver demandSolver;
+
     public InterConstantPropagation(AnalysisConfig config) {
         super(config);
         cp = new ConstantPropagation(new AnalysisConfig(ConstantPropagation.ID));
     }
 
+    /**
+     * If option "summary" is set, solves the problem with {@link SummarySolver},
+     * if option "ide" is set, solves linear constant propagation with
+     * {@link IDESolver}, if option "parallel" is set, propagates facts through
+     * the whole ICFG with {@link ParallelInterSolver}, otherwise with
+     * {@link InterSolver}.
+     */
+    @Override
+    public DataflowResult<Stmt, CPFact> analyze() {
+        if (Boolean.TRUE.equals(getOptions().get("summary"))) {
+            icfg = World.get().getResult(ICFGBuilder.ID);
+            return new SummarySolver(cp, icfg).solve();
+        }
+        if (Boolean.TRUE.equals(getOptions().get("ide"))) {
+            icfg = World.get().getResult(ICFGBuilder.ID);
+            return new IDESolver(cp, icfg).solve();
+        }
+        if (Boolean.TRUE.equals(getOptions().get("parallel"))) {
+            icfg = World.get().getResult(ICFGBuilder.ID);
+            return new ParallelInterSolver<>(this, icfg).solve();
+        }
+        return super.analyze();
+    }
+
+    /**
+     * Updates the result of the last {@link #analyze()} after nodes and edges
+     * are added to the ICFG in place, e.g., when more classes are loaded or
+     * entry methods are added. Only the nodes affected by the additions are
+     * re-analyzed, see {@link InterSolver#update}.
+     *
+     * @param addedNodes nodes added to the ICFG since the last analyze/update
+     * @param addedEdges edges added to the ICFG since the last analyze/update
+     * @return the updated result
+     */
+    public DataflowResult<Stmt, CPFact> update(Collection<Stmt> addedNodes,
+                                               Collection<ICFGEdge<Stmt>> addedEdges) {
+        if (solver == null) {
+            throw new IllegalStateException(
+                    "update() needs the result of the default work-list solver");
+        }
+        return solver.update(addedNodes, addedEdges);
+    }
+
+    /**
+     * Computes the value of var right before stmt on demand, without
+     * solving the whole program. Sub-queries are memoized across calls,
+     * and the number of sub-queries explored by one call is bounded by
+     * option "query-budget".
+     *
+     * @return the value of var at stmt, or NAC if the budget runs out.
+     */
+    public Value valueAt(Stmt stmt, Var var) {
+        if (demandSolver == null) {
+            if (icfg == null) {
+                icfg = World.get().getResult(ICFGBuilder.ID);
+            }
+            int budget = getOptions().get("query-budget") instanceof Integer b ?
+                    b : DEFAULT_QUERY_BUDGET;
+            demandSolver = new DemandSolver(cp, icfg, budget);
+        }
+        return demandSolver.valueAt(stmt, var);
+    }
+
     @Override
     public boolean isForward() {
         return cp.isForward();
@@ -78,9 +175,17 @@ public class InterConstantPropagation extends
         return cp.newInitialFact();
     }
 
+    /**
+     * Meets fact into target entry by entry, so the facts returned by the
+     * edge transfer functions, which may be the OUT fact of the source node
+     * itself, are only read and never copied.
+     */
     @Override
     public void meetInto(CPFact fact, CPFact target) {
-        cp.meetInto(fact, target);
+        fact.entries().forEach(entry -> {
+            Var var = entry.getKey();
+            target.update(var, cp.meetValue(entry.getValue(), target.get(var)));
+        });
     }
 
     @Override
@@ -100,27 +205,23 @@ public class InterConstantPropagation extends
 
     @Override
     protected CPFact transferCallToReturnEdge(CallToReturnEdge<Stmt> edge, CPFact out) {
-        CPFact outTmp = out.copy();
         Optional<LValue> def = edge.getSource().getDef();
-        if(def.isPresent()) {
-            if(def.get() instanceof Var var) {
-                outTmp.remove(var);
-            }
+        if(def.isPresent() && def.get() instanceof Var var && !out.get(var).isUndef()) {
+            return new FactWithout(out, var);
         }
-
-        return outTmp;
+        // nothing to kill, the caller's fact can be met as is
+        return out;
     }
 
     @Override
     protected CPFact transferCallEdge(CallEdge<Stmt> edge, CPFact callSiteOut) {
-        CPFact outTmp = callSiteOut.copy();
         CPFact cpFact = new CPFact();
 
         List<Var> params = edge.getCallee().getIR().getParams();
         if(edge.getSource() instanceof Invoke invokeStmt) {
             List<Var> args = invokeStmt.getInvokeExp().getArgs();
             for (int i = 0; i<params.size(); i++) {
-                cpFact.update(params.get(i), outTmp.get(args.get(i)));
+                cpFact.update(params.get(i), callSiteOut.get(args.get(i)));
             }
         }
         return cpFact;
@@ -147,3 +248,533 @@ public class InterConstantPropagation extends
         return cpFact;
     }
 }
+
+/**
+ * Summary-based solver for inter-procedural constant propagation.
+ * For each method and each abstract input (values of its parameters),
+ * the body is analyzed once and the resulting return value is cached,
+ * call sites then apply the summary of the callee instead of propagating
+ * facts through its body again.
+ * <p>
+ * The inputs of a method are only known from its callers, so summaries
+ * are not computed for all inputs up front. Instead, the inputs requested
+ * by call sites are solved by a work-list ordered bottom-up over the SCCs
+ * of the call graph, i.e., callee summaries are computed before the
+ * summaries of their callers, and the summaries in one SCC are iterated
+ * to a fixed point through their dependencies. Nothing recurses, so deep
+ * call chains do not grow the stack.
+ */
+class SummarySolver {
+
+    private record Input(JMethod method, List<Value> args) {
+    }
+
+    private final ConstantPropagation cp;
+
+    private final ICFG<JMethod, Stmt> icfg;
+
+    /**
+     * Current approximation of the summaries, UNDEF until solved.
+     */
+    private final Map<Input, Value> summaries = new HashMap<>();
+
+    /**
+     * Summary -> the summaries whose bodies read it, re-analyzed if it changes.
+     */
+    private final Map<Input, Set<Input>> readers = new HashMap<>();
+
+    /**
+     * Method -> index of its SCC, callees come before callers.
+     */
+    private Map<JMethod, Integer> sccIndex;
+
+    private PriorityQueue<Input> workList;
+
+    private final Set<Input> queued = new HashSet<>();
+
+    /**
+     * The summary being computed, null when the facts of the result are.
+     */
+    private Input current;
+
+    SummarySolver(ConstantPropagation cp, ICFG<JMethod, Stmt> icfg) {
+        this.cp = cp;
+        this.icfg = icfg;
+    }
+
+    DataflowResult<Stmt, CPFact> solve() {
+        DataflowResult<Stmt, CPFact> result = new DataflowResult<>();
+        Map<JMethod, Set<JMethod>> callees = new HashMap<>();
+        for (Stmt stmt : icfg) {
+            Set<JMethod> mCallees = callees.computeIfAbsent(
+                    icfg.getContainingMethodOf(stmt), m -> new LinkedHashSet<>());
+            if (stmt instanceof Invoke) {
+                mCallees.addAll(icfg.getCalleesOf(stmt));
+            }
+        }
+        Set<JMethod> entries = new HashSet<>(icfg.entryMethods().toList());
+        List<JMethod> roots = new ArrayList<>(entries);
+        roots.addAll(callees.keySet());
+        List<List<JMethod>> sccs = SCCFinder.find(roots,
+                m -> callees.getOrDefault(m, Set.of()));
+        sccIndex = new HashMap<>();
+        for (int i = 0; i < sccs.size(); ++i) {
+            for (JMethod method : sccs.get(i)) {
+                sccIndex.put(method, i);
+            }
+        }
+        workList = new PriorityQueue<>(Comparator.comparingInt(
+                (Input input) -> sccIndex.getOrDefault(input.method(), 0)));
+        // callers first, so that the inputs of a method are complete
+        // when its body is analyzed
+        Map<JMethod, List<Value>> inputs = new HashMap<>();
+        for (int i = sccs.size() - 1; i >= 0; --i) {
+            boolean changed;
+            do {
+                changed = false;
+                for (JMethod method : sccs.get(i)) {
+                    List<Value> input = mergeInputs(method, entries.contains(method), result);
+                    if (!input.equals(inputs.put(method, input))) {
+                        analyzeBody(method, input, result);
+                        changed = true;
+                    }
+                }
+            } while (changed);
+        }
+        return result;
+    }
+
+    /**
+     * Meets the argument values of all call sites of the method.
+     */
+    private List<Value> mergeInputs(JMethod method, boolean isEntry,
+                                    DataflowResult<Stmt, CPFact> result) {
+        List<Var> params = method.getIR().getParams();
+        List<Value> input = new ArrayList<>();
+        for (Var param : params) {
+            input.add(isEntry && ConstantPropagation.canHoldInt(param) ?
+                    Value.getNAC() : Value.getUndef());
+        }
+        for (Stmt callSite : icfg.getCallersOf(method)) {
+            CPFact callSiteOut = result.getOutFact(callSite);
+            if (callSiteOut != null) {
+                List<Var> args = ((Invoke) callSite).getInvokeExp().getArgs();
+                for (int i = 0; i < params.size(); i++) {
+                    input.set(i, cp.meetValue(input.get(i), callSiteOut.get(args.get(i))));
+                }
+            }
+        }
+        return input;
+    }
+
+    /**
+     * @return the value returned by the method for given input. While a
+     * summary is computed, the current approximation is returned and the
+     * summary being computed is re-analyzed if it changes later.
+     */
+    private Value summary(JMethod method, List<Value> args) {
+        Input input = new Input(method, args);
+        if (current != null) {
+            readers.computeIfAbsent(input, i -> new HashSet<>()).add(current);
+        }
+        if (!summaries.containsKey(input)) {
+            summaries.put(input, Value.getUndef());
+            enqueue(input);
+            if (current == null) {
+                // the facts of the result need the final summary
+                solveSummaries();
+            }
+        }
+        return summaries.get(input);
+    }
+
+    /**
+     * Solves the queued summaries, callees first, until none changes.
+     */
+    private void solveSummaries() {
+        while (!workList.isEmpty()) {
+            Input input = workList.poll();
+            queued.remove(input);
+            current = input;
+            Value value = analyzeBody(input.method(), input.args(), new DataflowResult<>());
+            current = null;
+            if (!value.equals(summaries.put(input, value))) {
+                readers.getOrDefault(input, Set.of()).forEach(this::enqueue);
+            }
+        }
+    }
+
+    private void enqueue(Input input) {
+        if (queued.add(input)) {
+            workList.add(input);
+        }
+    }
+
+    /**
+     * Analyzes the body of the method with given parameter values,
+     * and stores the facts of its nodes in result.
+     *
+     * @return the meet of values of return variables.
+     */
+    private Value analyzeBody(JMethod method, List<Value> args,
+                              DataflowResult<Stmt, CPFact> result) {
+        IR ir = method.getIR();
+        CFG<Stmt> cfg = ir.getResult(CFGBuilder.ID);
+        CPFact boundary = new CPFact();
+        List<Var> params = ir.getParams();
+        for (int i = 0; i < params.size(); i++) {
+            boundary.update(params.get(i), args.get(i));
+        }
+        for (Stmt node : cfg) {
+            result.setInFact(node, cp.newInitialFact());
+            result.setOutFact(node, cp.newInitialFact());
+        }
+        result.setInFact(cfg.getEntry(), boundary.copy());
+        result.setOutFact(cfg.getEntry(), boundary);
+
+        Queue<Stmt> workList = new ArrayDeque<>(cfg.getNodes());
+        Set<Stmt> inQueue = new HashSet<>(cfg.getNodes());
+        while (!workList.isEmpty()) {
+            Stmt node = workList.poll();
+            inQueue.remove(node);
+            if (node == cfg.getEntry()) {
+                continue;
+            }
+            CPFact in = result.getInFact(node);
+            for (Stmt pred : cfg.getPredsOf(node)) {
+                cp.meetInto(transferEdge(pred, result.getOutFact(pred)), in);
+            }
+            boolean changed = node instanceof Invoke ?
+                    result.getOutFact(node).copyFrom(in) :
+                    cp.transferNode(node, in, result.getOutFact(node));
+            if (changed) {
+                for (Stmt succ : cfg.getSuccsOf(node)) {
+                    if (inQueue.add(succ)) {
+                        workList.add(succ);
+                    }
+                }
+            }
+        }
+
+        CPFact exitOut = result.getOutFact(cfg.getExit());
+        Value value = Value.getUndef();
+        for (Var returnVar : ir.getReturnVars()) {
+            value = cp.meetValue(value, exitOut.get(returnVar));
+        }
+        return value;
+    }
+
+    /**
+     * Applies the summaries of callees on the edges leaving a call site,
+     * other edges are identity.
+     */
+    private CPFact transferEdge(Stmt pred, CPFact predOut) {
+        if (pred instanceof Invoke invoke && invoke.getLValue() != null) {
+            Var lVar = invoke.getLValue();
+            List<Value> args = invoke.getInvokeExp().getArgs()
+                    .stream().map(predOut::get).toList();
+            Value value = Value.getUndef();
+            for (JMethod callee : icfg.getCalleesOf(invoke)) {
+                value = cp.meetValue(value, summary(callee, args));
+            }
+            CPFact fact = predOut.copy();
+            fact.remove(lVar);
+            fact.update(lVar, value);
+            return fact;
+        }
+        return predOut;
+    }
+}
+
+/**
+ * Demand-driven solver for inter-procedural constant propagation.
+ * A query asks for the value of a variable at the IN (or OUT) of a node,
+ * and depends on queries at the predecessors of the node, following return
+ * edges into callees and call edges back to callers. The sub-queries
+ * reachable backwards from a query are explored first, then solved by a
+ * small work-list iteration, and the results are memoized.
+ */
+class DemandSolver {
+
+    private record Query(Stmt node, Var var, boolean isOut) {
+    }
+
+    private final ConstantPropagation cp;
+
+    private final ICFG<JMethod, Stmt> icfg;
+
+    private final int budget;
+
+    private final Set<Stmt> entryNodes;
+
+    private final Map<Query, Value> memo = new HashMap<>();
+
+    DemandSolver(ConstantPropagation cp, ICFG<JMethod, Stmt> icfg, int budget) {
+        this.cp = cp;
+        this.icfg = icfg;
+        this.budget = budget;
+        this.entryNodes = new HashSet<>(icfg.entryMethods().map(icfg::getEntryOf).toList());
+    }
+
+    Value valueAt(Stmt stmt, Var var) {
+        if (!ConstantPropagation.canHoldInt(var)) {
+            return Value.getUndef();
+        }
+        Query root = new Query(stmt, var, false);
+        if (memo.containsKey(root)) {
+            return memo.get(root);
+        }
+        // explore the sub-queries which the root query depends on
+        Map<Query, Set<Query>> users = new HashMap<>();
+        List<Query> explored = new ArrayList<>();
+        Set<Query> seen = new HashSet<>();
+        Queue<Query> queue = new ArrayDeque<>();
+        seen.add(root);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            if (explored.size() >= budget) {
+                return Value.getNAC();
+            }
+            Query query = queue.poll();
+            explored.add(query);
+            evaluate(query, dep -> {
+                users.computeIfAbsent(dep, d -> new HashSet<>()).add(query);
+                if (!memo.containsKey(dep) && seen.add(dep)) {
+                    queue.add(dep);
+                }
+                return Value.getUndef();
+            });
+        }
+        // solve the explored sub-problem
+        Map<Query, Value> values = new HashMap<>();
+        Function<Query, Value> lookup = dep -> memo.containsKey(dep) ?
+                memo.get(dep) : values.getOrDefault(dep, Value.getUndef());
+        Queue<Query> workList = new ArrayDeque<>(explored);
+        Set<Query> inQueue = new HashSet<>(explored);
+        while (!workList.isEmpty()) {
+            Query query = workList.poll();
+            inQueue.remove(query);
+            Value value = evaluate(query, lookup);
+            if (!value.equals(lookup.apply(query))) {
+                values.put(query, value);
+                for (Query user : users.getOrDefault(query, Set.of())) {
+                    if (inQueue.add(user)) {
+                        workList.add(user);
+                    }
+                }
+            }
+        }
+        for (Query query : explored) {
+            memo.put(query, values.getOrDefault(query, Value.getUndef()));
+        }
+        return memo.get(root);
+    }
+
+    /**
+     * Evaluates a query from the values of the queries it depends on.
+     * All dependencies are looked up unconditionally, so the same method
+     * also serves to discover them.
+     */
+    private Value evaluate(Query query, Function<Query, Value> lookup) {
+        Stmt node = query.node();
+        Var var = query.var();
+        if (!ConstantPropagation.canHoldInt(var)) {
+            return Value.getUndef();
+        }
+        if (query.isOut()) {
+            if (!icfg.isCallSite(node) && node.getDef().isPresent()
+                    && var.equals(node.getDef().get())) {
+                return evaluateDef(node, lookup);
+            }
+            return lookup.apply(new Query(node, var, false));
+        }
+        if (entryNodes.contains(node)) {
+            return icfg.getContainingMethodOf(node).getIR().getParams().contains(var) ?
+                    Value.getNAC() : Value.getUndef();
+        }
+        Value value = Value.getUndef();
+        for (ICFGEdge<Stmt> edge : icfg.getInEdgesOf(node)) {
+            value = cp.meetValue(value, evaluateEdge(edge, var, lookup));
+        }
+        return value;
+    }
+
+    private Value evaluateDef(Stmt node, Function<Query, Value> lookup) {
+        if (node instanceof AssignLiteral assign) {
+            return Value.makeConstant(((IntLiteral) assign.getRValue()).getValue());
+        } else if (node instanceof Copy copy) {
+            return lookup.apply(new Query(node, copy.getRValue(), false));
+        } else if (node instanceof Binary binary) {
+            BinaryExp exp = binary.getRValue();
+            CPFact operands = new CPFact();
+            Value v1 = lookup.apply(new Query(node, exp.getOperand1(), false));
+            Value v2 = lookup.apply(new Query(node, exp.getOperand2(), false));
+            operands.update(exp.getOperand1(), v1);
+            operands.update(exp.getOperand2(), v2);
+            return ConstantPropagation.evaluate(exp, operands);
+        }
+        return Value.getNAC();
+    }
+
+    private Value evaluateEdge(ICFGEdge<Stmt> edge, Var var, Function<Query, Value> lookup) {
+        Stmt source = edge.getSource();
+        if (edge instanceof CallToReturnEdge<Stmt>) {
+            return var.equals(((Invoke) source).getLValue()) ? Value.getUndef() :
+                    lookup.apply(new Query(source, var, true));
+        } else if (edge instanceof ReturnEdge<Stmt> returnEdge) {
+            Value value = Value.getUndef();
+            if (var.equals(((Invoke) returnEdge.getCallSite()).getLValue())) {
+                for (Var returnVar : returnEdge.getReturnVars()) {
+                    value = cp.meetValue(value, lookup.apply(new Query(source, returnVar, true)));
+                }
+            }
+            return value;
+        } else if (edge instanceof CallEdge<Stmt> callEdge) {
+            Value value = Value.getUndef();
+            List<Var> params = callEdge.getCallee().getIR().getParams();
+            List<Var> args = ((Invoke) source).getInvokeExp().getArgs();
+            for (int i = 0; i < params.size(); i++) {
+                if (params.get(i).equals(var)) {
+                    value = cp.meetValue(value, lookup.apply(new Query(source, args.get(i), true)));
+                }
+            }
+            return value;
+        }
+        return lookup.apply(new Query(source, var, true));
+    }
+}
+
+/**
+ * Read-only view of a fact minus one variable, i.e., the variable is UNDEF
+ * in the view. It reads through to the underlying fact without copying it,
+ * and is meant to be consumed by {@link InterConstantPropagation#meetInto}.
+ * The backing map inherited from {@link CPFact} is never used, so every
+ * read method is overridden, and every write method throws.
+ */
+class FactWithout extends CPFact {
+
+    private final CPFact fact;
+
+    private final Var killed;
+
+    FactWithout(CPFact fact, Var killed) {
+        this.fact = fact;
+        this.killed = killed;
+    }
+
+    @Override
+    public Value get(Var key) {
+        return key.equals(killed) ? Value.getUndef() : fact.get(key);
+    }
+
+    @Override
+    public Stream<Map.Entry<Var, Value>> entries() {
+        return fact.entries().filter(entry -> !entry.getKey().equals(killed));
+    }
+
+    @Override
+    public void forEach(BiConsumer<Var, Value> action) {
+        fact.forEach((var, value) -> {
+            if (!var.equals(killed)) {
+                action.accept(var, value);
+            }
+        });
+    }
+
+    @Override
+    public Set<Var> keySet() {
+        Set<Var> keys = fact.keySet();
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object o) {
+                return !killed.equals(o) && keys.contains(o);
+            }
+
+            @Override
+            public Iterator<Var> iterator() {
+                return keys.stream().filter(var -> !var.equals(killed)).iterator();
+            }
+
+            @Override
+            public int size() {
+                return keys.contains(killed) ? keys.size() - 1 : keys.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Value> values() {
+        Set<Var> keys = keySet();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Value> iterator() {
+                return keys.stream().map(fact::get).iterator();
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keySet().isEmpty();
+    }
+
+    @Override
+    public boolean update(Var key, Value value) {
+        throw new UnsupportedOperationException("FactWithout is read-only");
+    }
+
+    @Override
+    public Value remove(Var key) {
+        throw new UnsupportedOperationException("FactWithout is read-only");
+    }
+
+    @Override
+    public boolean copyFrom(MapFact<Var, Value> fact) {
+        throw new UnsupportedOperationException("FactWithout is read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("FactWithout is read-only");
+    }
+
+    @Override
+    public CPFact copy() {
+        CPFact copy = fact.copy();
+        copy.remove(killed);
+        return copy;
+    }
+
+    /**
+     * Equal to any fact with the same entries, like the facts it stands for.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CPFact other)) {
+            return false;
+        }
+        Set<Var> keys = keySet();
+        return keys.size() == other.keySet().size()
+                && keys.stream().allMatch(var -> fact.get(var).equals(other.get(var)));
+    }
+
+    @Override
+    public int hashCode() {
+        // same as the hash code of the map of entries
+        return entries().mapToInt(Map.Entry::hashCode).sum();
+    }
+
+    @Override
+    public String toString() {
+        return entries().map(Object::toString)
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+}
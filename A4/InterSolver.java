@@ -30,6 +30,13 @@ import pascal.taie.ir.stmt.Return;
 import pascal.taie.util.collection.SetQueue;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -48,13 +55,14 @@ class InterSolver<Method, Node, Fact> {
 
     private DataflowResult<Node, Fact> result;
 
-    private Queue<Node> workList;
+    private NodeWorkList<Method, Node> workList;
+
+    private Set<Node> entryNodes;
 
     InterSolver(InterDataflowAnalysis<Node, Fact> analysis,
                 ICFG<Method, Node> icfg) {
         this.analysis = analysis;
         this.icfg = icfg;
-        this.workList = new ArrayDeque<>();
     }
 
     DataflowResult<Node, Fact> solve() {
@@ -65,7 +73,8 @@ class InterSolver<Method, Node, Fact> {
     }
 
     private void initialize() {
-        List<Node> entryNodes = icfg.entryMethods().map(icfg::getEntryOf).toList();
+        entryNodes = icfg.entryMethods().map(icfg::getEntryOf).collect(Collectors.toSet());
+        workList = new NodeWorkList<>(icfg);
         for (Node node :
                 icfg) {
             if(entryNodes.contains(node)) {
@@ -78,11 +87,59 @@ class InterSolver<Method, Node, Fact> {
 
     }
 
+    /**
+     * Updates the result of the last {@link #solve()} after nodes and edges
+     * are added to the ICFG, e.g., new call edges or new entry methods.
+     * The previous result is kept as the starting point, and only the added
+     * nodes, the targets of added edges and their dependents are re-analyzed.
+     *
+     * @param addedNodes nodes added to the ICFG since last solve/update
+     * @param addedEdges edges added to the ICFG since last solve/update
+     * @return the updated result
+     */
+    DataflowResult<Node, Fact> update(Collection<Node> addedNodes,
+                                      Collection<ICFGEdge<Node>> addedEdges) {
+        if (result == null) {
+            return solve();
+        }
+        Set<Node> oldEntryNodes = entryNodes;
+        entryNodes = icfg.entryMethods().map(icfg::getEntryOf).collect(Collectors.toSet());
+        if (!addedNodes.isEmpty()) {
+            workList = new NodeWorkList<>(icfg);
+        }
+        for (Node node : addedNodes) {
+            if (entryNodes.contains(node)) {
+                result.setOutFact(node, analysis.newBoundaryFact(node));
+            } else {
+                result.setInFact(node, analysis.newInitialFact());
+                result.setOutFact(node, analysis.newInitialFact());
+            }
+            workList.add(node);
+        }
+        for (Node node : entryNodes) {
+            if (!oldEntryNodes.contains(node) && !addedNodes.contains(node)) {
+                // existing method becomes an entry, its entry keeps the facts
+                // from its callers and gets the boundary fact as well
+                Fact outFact = result.getOutFact(node);
+                analysis.meetInto(analysis.newBoundaryFact(node), outFact);
+                result.setOutFact(node, outFact);
+                icfg.getOutEdgesOf(node).forEach(edge -> workList.add(edge.getTarget()));
+            }
+        }
+        for (ICFGEdge<Node> edge : addedEdges) {
+            workList.add(edge.getTarget());
+        }
+        propagate();
+        return result;
+    }
+
     private void doSolve() {
+        workList.getNodes().forEach(workList::add);
+        propagate();
+    }
 
-        workList.addAll(icfg.getNodes());
+    private void propagate() {
         Fact inFact, outFact;
-        List<Node> entryNodes = icfg.entryMethods().map(icfg::getEntryOf).toList();
 
         while(!workList.isEmpty()) {
             Node node = workList.poll();
@@ -105,10 +162,7 @@ class InterSolver<Method, Node, Fact> {
 
                 if (tmp) {
                     for (ICFGEdge<Node> outEdge : icfg.getOutEdgesOf(node)) {
-                        Node target = outEdge.getTarget();
-                        if(!workList.contains(target)) {
-                            workList.add(target);
-                        }
+                        workList.add(outEdge.getTarget());
                     }
                 }
 
@@ -116,3 +170,367 @@ class InterSolver<Method, Node, Fact> {
         }
     }
 }
+
+/**
+ * Work-list of ICFG nodes. Nodes are numbered by method-level reverse
+ * postorder over the SCCs of the call graph (callers before callees),
+ * and by reverse postorder inside each method. The node with the smallest
+ * ordinal is always polled first, and membership is kept in a bitset,
+ * so a node is never queued twice.
+ */
+class NodeWorkList<Method, Node> {
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    private final Map<Node, Integer> ordinals = new HashMap<>();
+
+    private final PriorityQueue<Integer> queue = new PriorityQueue<>();
+
+    private final BitSet inQueue = new BitSet();
+
+    NodeWorkList(ICFG<Method, Node> icfg) {
+        Map<Method, List<Node>> methodNodes = new LinkedHashMap<>();
+        for (Node node : icfg) {
+            methodNodes.computeIfAbsent(icfg.getContainingMethodOf(node),
+                    m -> new ArrayList<>()).add(node);
+        }
+        Map<Method, Set<Method>> callees = new HashMap<>();
+        methodNodes.forEach((method, mNodes) -> {
+            Set<Method> mCallees = new LinkedHashSet<>();
+            for (Node node : mNodes) {
+                if (icfg.isCallSite(node)) {
+                    mCallees.addAll(icfg.getCalleesOf(node));
+                }
+            }
+            callees.put(method, mCallees);
+        });
+        List<Method> roots = new ArrayList<>(icfg.entryMethods().toList());
+        roots.addAll(methodNodes.keySet());
+        List<List<Method>> sccs = SCCFinder.find(roots,
+                m -> callees.getOrDefault(m, Set.of()));
+        // Tarjan gives reverse topological order, so callers come last
+        for (int i = sccs.size() - 1; i >= 0; --i) {
+            for (Method method : sccs.get(i)) {
+                List<Node> mNodes = methodNodes.get(method);
+                if (mNodes != null) {
+                    orderNodes(icfg, method, mNodes).forEach(node -> {
+                        ordinals.put(node, nodes.size());
+                        nodes.add(node);
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * @return nodes of the method in reverse postorder of its intra-procedural
+     * edges, nodes unreachable from the method entry are appended at the end.
+     */
+    private List<Node> orderNodes(ICFG<Method, Node> icfg, Method method, List<Node> mNodes) {
+        List<Node> postOrder = new ArrayList<>();
+        Set<Node> visited = new HashSet<>();
+        Deque<Map.Entry<Node, Iterator<ICFGEdge<Node>>>> stack = new ArrayDeque<>();
+        Node entry = icfg.getEntryOf(method);
+        visited.add(entry);
+        stack.push(Map.entry(entry, icfg.getOutEdgesOf(entry).iterator()));
+        while (!stack.isEmpty()) {
+            Iterator<ICFGEdge<Node>> it = stack.peek().getValue();
+            if (it.hasNext()) {
+                ICFGEdge<Node> edge = it.next();
+                Node target = edge.getTarget();
+                if (!(edge instanceof CallEdge) && !(edge instanceof ReturnEdge)
+                        && visited.add(target)) {
+                    stack.push(Map.entry(target, icfg.getOutEdgesOf(target).iterator()));
+                }
+            } else {
+                postOrder.add(stack.pop().getKey());
+            }
+        }
+        Collections.reverse(postOrder);
+        for (Node node : mNodes) {
+            if (visited.add(node)) {
+                postOrder.add(node);
+            }
+        }
+        return postOrder;
+    }
+
+    /**
+     * Adds a node to the work-list if it is not queued yet.
+     *
+     * @return true if the node is newly added.
+     */
+    boolean add(Node node) {
+        int ordinal = ordinals.get(node);
+        if (inQueue.get(ordinal)) {
+            return false;
+        }
+        inQueue.set(ordinal);
+        queue.add(ordinal);
+        return true;
+    }
+
+    Node poll() {
+        int ordinal = queue.poll();
+        inQueue.clear(ordinal);
+        return nodes.get(ordinal);
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * @return all nodes in the order of their ordinals.
+     */
+    List<Node> getNodes() {
+        return nodes;
+    }
+}
+
+/**
+ * Iterative Tarjan's algorithm for strongly connected components.
+ */
+final class SCCFinder {
+
+    private SCCFinder() {
+    }
+
+    /**
+     * Finds the SCCs reachable from given roots.
+     *
+     * @return the SCCs in reverse topological order, i.e., every SCC comes
+     * after all SCCs reachable from it.
+     */
+    static <N> List<List<N>> find(Iterable<N> roots, Function<N, ? extends Collection<N>> succs) {
+        Map<N, Integer> index = new HashMap<>();
+        Map<N, Integer> lowLink = new HashMap<>();
+        Deque<N> stack = new ArrayDeque<>();
+        Set<N> onStack = new HashSet<>();
+        Deque<Map.Entry<N, Iterator<N>>> callStack = new ArrayDeque<>();
+        List<List<N>> sccs = new ArrayList<>();
+        for (N root : roots) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            callStack.push(Map.entry(root, succs.apply(root).iterator()));
+            while (!callStack.isEmpty()) {
+                N node = callStack.peek().getKey();
+                Iterator<N> it = callStack.peek().getValue();
+                if (it.hasNext()) {
+                    N succ = it.next();
+                    if (!index.containsKey(succ)) {
+                        index.put(succ, index.size());
+                        lowLink.put(succ, index.get(succ));
+                        stack.push(succ);
+                        onStack.add(succ);
+                        callStack.push(Map.entry(succ, succs.apply(succ).iterator()));
+                    } else if (onStack.contains(succ)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(succ)));
+                    }
+                } else {
+                    callStack.pop();
+                    if (!callStack.isEmpty()) {
+                        N parent = callStack.peek().getKey();
+                        lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                    }
+                    if (lowLink.get(node).equals(index.get(node))) {
+                        List<N> scc = new ArrayList<>();
+                        N member;
+                        do {
+                            member = stack.pop();
+                            onStack.remove(member);
+                            scc.add(member);
+                        } while (!member.equals(node));
+                        sccs.add(scc);
+                    }
+                }
+            }
+        }
+        return sccs;
+    }
+}
+
+/**
+ * Parallel variant of {@link InterSolver}. ICFG nodes are partitioned by
+ * their containing methods, each method has a worker with its own local
+ * work-list, and facts flowing along call and return edges are sent to
+ * the inbox of the target method. The solver terminates when no worker
+ * is scheduled any more.
+ */
+class ParallelInterSolver<Method, Node, Fact> {
+
+    private record Message<Node, Fact>(Node target, Fact fact) {
+    }
+
+    private final InterDataflowAnalysis<Node, Fact> analysis;
+
+    private final ICFG<Method, Node> icfg;
+
+    private final Map<Method, Worker> workers = new HashMap<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private ExecutorService executor;
+
+    ParallelInterSolver(InterDataflowAnalysis<Node, Fact> analysis,
+                        ICFG<Method, Node> icfg) {
+        this.analysis = analysis;
+        this.icfg = icfg;
+    }
+
+    DataflowResult<Node, Fact> solve() {
+        Set<Node> entryNodes = icfg.entryMethods().map(icfg::getEntryOf).collect(Collectors.toSet());
+        for (Node node : icfg) {
+            Worker worker = workers.computeIfAbsent(icfg.getContainingMethodOf(node), m -> new Worker());
+            if (entryNodes.contains(node)) {
+                worker.entryNodes.add(node);
+                worker.outFacts.put(node, analysis.newBoundaryFact(node));
+            } else {
+                worker.inFacts.put(node, analysis.newInitialFact());
+                worker.outFacts.put(node, analysis.newInitialFact());
+            }
+            worker.workList.add(node);
+        }
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            workers.values().forEach(Worker::schedule);
+            synchronized (active) {
+                while (active.get() > 0) {
+                    active.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw new RuntimeException(failure.get());
+        }
+
+        DataflowResult<Node, Fact> result = new DataflowResult<>();
+        for (Worker worker : workers.values()) {
+            worker.inFacts.forEach(result::setInFact);
+            worker.outFacts.forEach(result::setOutFact);
+        }
+        return result;
+    }
+
+    private class Worker implements Runnable {
+
+        private final Set<Node> entryNodes = new HashSet<>();
+
+        private final Map<Node, Fact> inFacts = new HashMap<>();
+
+        private final Map<Node, Fact> outFacts = new HashMap<>();
+
+        /**
+         * Meet of the facts received along call and return edges.
+         */
+        private final Map<Node, Fact> externalFacts = new HashMap<>();
+
+        private final Set<Node> processed = new HashSet<>();
+
+        private final Queue<Node> workList = new LinkedList<>();
+
+        private final Set<Node> inQueue = new HashSet<>();
+
+        private final Queue<Message<Node, Fact>> inbox = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void send(Node target, Fact fact) {
+            inbox.add(new Message<>(target, fact));
+            schedule();
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                active.incrementAndGet();
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                do {
+                    drainInbox();
+                    while (!workList.isEmpty() && failure.get() == null) {
+                        Node node = workList.poll();
+                        inQueue.remove(node);
+                        process(node);
+                    }
+                    scheduled.set(false);
+                } while (!inbox.isEmpty() && scheduled.compareAndSet(false, true));
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                if (active.decrementAndGet() == 0) {
+                    synchronized (active) {
+                        active.notifyAll();
+                    }
+                }
+            }
+        }
+
+        private void drainInbox() {
+            Message<Node, Fact> message;
+            while ((message = inbox.poll()) != null) {
+                Node target = message.target();
+                Fact external = externalFacts.computeIfAbsent(target, n -> analysis.newInitialFact());
+                analysis.meetInto(message.fact(), external);
+                addWorkList(target);
+            }
+        }
+
+        private void addWorkList(Node node) {
+            if (inQueue.add(node)) {
+                workList.add(node);
+            }
+        }
+
+        private void process(Node node) {
+            boolean changed = false;
+            Fact outFact = outFacts.get(node);
+            if (!entryNodes.contains(node)) {
+                Fact inFact = inFacts.get(node);
+                for (ICFGEdge<Node> edge : icfg.getInEdgesOf(node)) {
+                    if (!isInterEdge(edge)) {
+                        analysis.meetInto(analysis.transferEdge(edge, outFacts.get(edge.getSource())), inFact);
+                    }
+                }
+                Fact external = externalFacts.get(node);
+                if (external != null) {
+                    analysis.meetInto(external, inFact);
+                }
+                changed = analysis.transferNode(node, inFact, outFact);
+            }
+            boolean first = processed.add(node);
+            if (changed || first) {
+                for (ICFGEdge<Node> outEdge : icfg.getOutEdgesOf(node)) {
+                    Node target = outEdge.getTarget();
+                    if (isInterEdge(outEdge)) {
+                        workers.get(icfg.getContainingMethodOf(target))
+                                .send(target, analysis.transferEdge(outEdge, outFact));
+                    } else if (changed) {
+                        addWorkList(target);
+                    }
+                }
+            }
+        }
+
+        private boolean isInterEdge(ICFGEdge<Node> edge) {
+            return edge instanceof CallEdge || edge instanceof ReturnEdge;
+        }
+    }
+}
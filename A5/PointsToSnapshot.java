@@ -0,0 +1,728 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.World;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.graph.callgraph.CallGraphs;
+import pascal.taie.analysis.graph.callgraph.DefaultCallGraph;
+import pascal.taie.analysis.graph.callgraph.Edge;
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.cs.element.ArrayIndex;
+import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
+import pascal.taie.analysis.pta.core.cs.element.CSMethod;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSVar;
+import pascal.taie.analysis.pta.core.cs.element.InstanceField;
+import pascal.taie.analysis.pta.core.cs.element.StaticField;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.ClassHierarchy;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.AbstractResultHolder;
+import pascal.taie.util.AnalysisException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Compact binary snapshot of a points-to analysis result, so that
+ * downstream analyses can read the result instead of re-running
+ * the pointer analysis.
+ * <p>
+ * Strings (signatures, names, types) are interned in a string table,
+ * objects are numbered, points-to sets are stored as arrays of object
+ * numbers. Variables are keyed by (method signature, variable name),
+ * static fields by field signature, instance fields by (object number,
+ * field signature) and array indexes by object number. Each kind of
+ * record is sorted by its key, so that the {@link Reader} looks them up
+ * by binary search directly in the memory-mapped file.
+ */
+public final class PointsToSnapshot {
+
+    private static final int MAGIC = 0x50545332; // "PTS2"
+
+    private static final int HEADER_SIZE = 4 * 18;
+
+    private PointsToSnapshot() {
+    }
+
+    /**
+     * Context-insensitive points-to sets of the heap pointers to write.
+     * The sets of context-sensitive pointers are merged by their objects,
+     * e.g., the sets of all instance fields f of the objects o
+     * in any heap context are added to the one of (o, f).
+     */
+    public static final class Heap {
+
+        private final Map<JField, Set<Obj>> staticFields = new LinkedHashMap<>();
+
+        private final Map<Obj, Map<JField, Set<Obj>>> instanceFields = new LinkedHashMap<>();
+
+        private final Map<Obj, Set<Obj>> arrayIndexes = new LinkedHashMap<>();
+
+        public Heap addStaticField(JField field, Collection<Obj> pts) {
+            staticFields.computeIfAbsent(field, f -> new LinkedHashSet<>()).addAll(pts);
+            return this;
+        }
+
+        public Heap addInstanceField(Obj base, JField field, Collection<Obj> pts) {
+            instanceFields.computeIfAbsent(base, b -> new LinkedHashMap<>())
+                    .computeIfAbsent(field, f -> new LinkedHashSet<>()).addAll(pts);
+            return this;
+        }
+
+        public Heap addArrayIndex(Obj array, Collection<Obj> pts) {
+            arrayIndexes.computeIfAbsent(array, a -> new LinkedHashSet<>()).addAll(pts);
+            return this;
+        }
+    }
+
+    /**
+     * Writes the snapshot of given points-to result to path.
+     *
+     * @param vars      the variables to write
+     * @param pointsTo  the points-to set of each variable
+     * @param heap      the points-to sets of the heap pointers
+     * @param callGraph the call graph, its entries and edges are written
+     */
+    public static void write(Path path, Collection<Var> vars,
+                             Function<Var, ? extends Collection<Obj>> pointsTo,
+                             Heap heap, CallGraph<Invoke, JMethod> callGraph) {
+        Encoder enc = new Encoder();
+        try {
+            List<Var> sortedVars = new ArrayList<>(vars);
+            sortedVars.sort(Comparator.comparing((Var v) -> v.getMethod().getSignature())
+                    .thenComparing(Var::getName));
+            List<int[]> varRecords = new ArrayList<>();
+            for (Var var : sortedVars) {
+                varRecords.add(new int[]{
+                        enc.string(var.getMethod().getSignature()),
+                        enc.string(var.getName()),
+                        enc.pts(pointsTo.apply(var))});
+            }
+            List<int[]> staticRecords = new ArrayList<>();
+            for (Map.Entry<JField, Set<Obj>> e : heap.staticFields.entrySet()) {
+                staticRecords.add(new int[]{
+                        enc.string(e.getKey().getSignature()),
+                        enc.pts(e.getValue())});
+            }
+            staticRecords.sort(Comparator.comparing(r -> enc.strings.get(r[0])));
+            List<int[]> instanceRecords = new ArrayList<>();
+            for (Map.Entry<Obj, Map<JField, Set<Obj>>> e : heap.instanceFields.entrySet()) {
+                int base = enc.obj(e.getKey());
+                for (Map.Entry<JField, Set<Obj>> f : e.getValue().entrySet()) {
+                    instanceRecords.add(new int[]{
+                            base,
+                            enc.string(f.getKey().getSignature()),
+                            enc.pts(f.getValue())});
+                }
+            }
+            instanceRecords.sort(Comparator.comparingInt((int[] r) -> r[0])
+                    .thenComparing(r -> enc.strings.get(r[1])));
+            List<int[]> arrayRecords = new ArrayList<>();
+            for (Map.Entry<Obj, Set<Obj>> e : heap.arrayIndexes.entrySet()) {
+                arrayRecords.add(new int[]{
+                        enc.obj(e.getKey()),
+                        enc.pts(e.getValue())});
+            }
+            arrayRecords.sort(Comparator.comparingInt(r -> r[0]));
+            List<int[]> edgeRecords = new ArrayList<>();
+            callGraph.edges().forEach(edge -> edgeRecords.add(new int[]{
+                    enc.string(edge.getCallSite().getContainer().getSignature()),
+                    edge.getCallSite().getIndex(),
+                    enc.string(edge.getCallee().getSignature())}));
+            edgeRecords.sort(Comparator.comparing((int[] r) -> enc.strings.get(r[0]))
+                    .thenComparingInt(r -> r[1]));
+            List<int[]> entryRecords = new ArrayList<>();
+            callGraph.entryMethods().forEach(entry ->
+                    entryRecords.add(new int[]{enc.string(entry.getSignature())}));
+
+            ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+            DataOutputStream stringOut = new DataOutputStream(stringBytes);
+            int[] stringOffsets = new int[enc.strings.size()];
+            for (int i = 0; i < enc.strings.size(); ++i) {
+                stringOffsets[i] = stringOut.size();
+                byte[] bytes = enc.strings.get(i).getBytes(StandardCharsets.UTF_8);
+                stringOut.writeInt(bytes.length);
+                stringOut.write(bytes);
+            }
+
+            int stringsPos = HEADER_SIZE;
+            int objsPos = stringsPos + 4 * enc.strings.size() + stringOut.size();
+            int varsPos = objsPos + 12 * enc.objRecords.size();
+            int staticsPos = varsPos + 12 * varRecords.size();
+            int instancesPos = staticsPos + 8 * staticRecords.size();
+            int arraysPos = instancesPos + 12 * instanceRecords.size();
+            int ptsPos = arraysPos + 8 * arrayRecords.size();
+            int edgesPos = ptsPos + enc.ptsOut.size();
+            int entriesPos = edgesPos + 12 * edgeRecords.size();
+            try (OutputStream file = Files.newOutputStream(path);
+                 DataOutputStream out = new DataOutputStream(
+                         new BufferedOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(enc.strings.size());
+                out.writeInt(enc.objRecords.size());
+                out.writeInt(varRecords.size());
+                out.writeInt(staticRecords.size());
+                out.writeInt(instanceRecords.size());
+                out.writeInt(arrayRecords.size());
+                out.writeInt(edgeRecords.size());
+                out.writeInt(entryRecords.size());
+                out.writeInt(stringsPos);
+                out.writeInt(objsPos);
+                out.writeInt(varsPos);
+                out.writeInt(staticsPos);
+                out.writeInt(instancesPos);
+                out.writeInt(arraysPos);
+                out.writeInt(ptsPos);
+                out.writeInt(edgesPos);
+                out.writeInt(entriesPos);
+                for (int offset : stringOffsets) {
+                    out.writeInt(offset);
+                }
+                stringBytes.writeTo(out);
+                writeRecords(out, enc.objRecords, varRecords,
+                        staticRecords, instanceRecords, arrayRecords);
+                enc.ptsBytes.writeTo(out);
+                writeRecords(out, edgeRecords, entryRecords);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Failed to write points-to snapshot to " + path, e);
+        }
+    }
+
+    @SafeVarargs
+    private static void writeRecords(DataOutputStream out, List<int[]>... sections)
+            throws IOException {
+        for (List<int[]> records : sections) {
+            for (int[] record : records) {
+                for (int value : record) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Numbers the strings and objects, and encodes the points-to sets,
+     * while a snapshot is written.
+     */
+    private static final class Encoder {
+
+        private final Map<String, Integer> stringIds = new HashMap<>();
+
+        private final List<String> strings = new ArrayList<>();
+
+        private final Map<Obj, Integer> objIds = new HashMap<>();
+
+        private final List<int[]> objRecords = new ArrayList<>();
+
+        private final ByteArrayOutputStream ptsBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream ptsOut = new DataOutputStream(ptsBytes);
+
+        private int string(String s) {
+            return stringIds.computeIfAbsent(s, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+
+        private int obj(Obj obj) {
+            return objIds.computeIfAbsent(obj, o -> {
+                objRecords.add(new int[]{
+                        string(o.getType().getName()),
+                        o.getContainerMethod()
+                                .map(m -> string(m.getSignature()))
+                                .orElse(-1),
+                        string(o.toString())});
+                return objRecords.size() - 1;
+            });
+        }
+
+        /**
+         * @return the offset of pts in the points-to set section.
+         */
+        private int pts(Collection<Obj> pts) throws IOException {
+            int offset = ptsOut.size();
+            ptsOut.writeInt(pts.size());
+            for (Obj obj : pts) {
+                ptsOut.writeInt(obj(obj));
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Opens a snapshot written by {@link #write}.
+     */
+    public static Reader open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) {
+                throw new AnalysisException(path + " is not a points-to snapshot");
+            }
+            return new Reader(buffer);
+        } catch (IOException e) {
+            throw new AnalysisException("Failed to read points-to snapshot " + path, e);
+        }
+    }
+
+    /**
+     * Reads a memory-mapped snapshot. It answers the context-insensitive
+     * queries of {@link PointerAnalysisResult}, and the points-to sets of
+     * heap pointers by {@link #getPointsToSet(JField)},
+     * {@link #getPointsToSet(Obj, JField)} and {@link #getArrayPointsToSet(Obj)}.
+     * Variables and methods are resolved against the current {@link World}.
+     * The snapshot keeps no contexts, the queries on context-sensitive
+     * elements throw {@link UnsupportedOperationException}.
+     */
+    public static final class Reader extends AbstractResultHolder
+            implements PointerAnalysisResult {
+
+        private final ByteBuffer buffer;
+
+        private final int stringCount;
+
+        private final int objCount;
+
+        private final int varCount;
+
+        private final int staticCount;
+
+        private final int instanceCount;
+
+        private final int arrayCount;
+
+        private final int edgeCount;
+
+        private final int entryCount;
+
+        private final int stringsPos;
+
+        private final int objsPos;
+
+        private final int varsPos;
+
+        private final int staticsPos;
+
+        private final int instancesPos;
+
+        private final int arraysPos;
+
+        private final int ptsPos;
+
+        private final int edgesPos;
+
+        private final int entriesPos;
+
+        /**
+         * Objects are materialized on demand, one per object number.
+         */
+        private final SnapshotObj[] objs;
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            stringCount = buffer.getInt(4);
+            objCount = buffer.getInt(8);
+            varCount = buffer.getInt(12);
+            staticCount = buffer.getInt(16);
+            instanceCount = buffer.getInt(20);
+            arrayCount = buffer.getInt(24);
+            edgeCount = buffer.getInt(28);
+            entryCount = buffer.getInt(32);
+            stringsPos = buffer.getInt(36);
+            objsPos = buffer.getInt(40);
+            varsPos = buffer.getInt(44);
+            staticsPos = buffer.getInt(48);
+            instancesPos = buffer.getInt(52);
+            arraysPos = buffer.getInt(56);
+            ptsPos = buffer.getInt(60);
+            edgesPos = buffer.getInt(64);
+            entriesPos = buffer.getInt(68);
+            objs = new SnapshotObj[objCount];
+        }
+
+        /**
+         * Variables resolved in the current program, computed on first use.
+         */
+        private Collection<Var> vars;
+
+        /**
+         * Call graph resolved in the current program, computed on first use.
+         */
+        private CallGraph<Invoke, JMethod> callGraph;
+
+        /**
+         * @return the variables in the snapshot which can be resolved
+         * in the current program.
+         */
+        @Override
+        public Collection<Var> getVars() {
+            if (vars == null) {
+                vars = Collections.unmodifiableList(resolveVars());
+            }
+            return vars;
+        }
+
+        private List<Var> resolveVars() {
+            List<Var> vars = new ArrayList<>(varCount);
+            Map<String, Map<String, Var>> methodVars = new HashMap<>();
+            for (int i = 0; i < varCount; ++i) {
+                int record = varsPos + 12 * i;
+                Map<String, Var> varsByName = methodVars.computeIfAbsent(
+                        string(buffer.getInt(record)), this::varsOf);
+                Var var = varsByName.get(string(buffer.getInt(record + 4)));
+                if (var != null) {
+                    vars.add(var);
+                }
+            }
+            return vars;
+        }
+
+        /**
+         * @return the points-to set of var, or an empty set if var is
+         * not in the snapshot.
+         */
+        @Override
+        public Set<Obj> getPointsToSet(Var var) {
+            String method = var.getMethod().getSignature();
+            String name = var.getName();
+            IntUnaryOperator key = record -> {
+                int cmp = string(buffer.getInt(record)).compareTo(method);
+                return cmp != 0 ? cmp :
+                        string(buffer.getInt(record + 4)).compareTo(name);
+            };
+            return pointsToSetOf(varsPos, varCount, 12, key, 8);
+        }
+
+        /**
+         * @return the points-to set of the static field, or an empty set
+         * if the field is not in the snapshot.
+         */
+        public Set<Obj> getPointsToSet(JField staticField) {
+            String field = staticField.getSignature();
+            IntUnaryOperator key = record ->
+                    string(buffer.getInt(record)).compareTo(field);
+            return pointsToSetOf(staticsPos, staticCount, 8, key, 4);
+        }
+
+        /**
+         * @return the points-to set of the instance field of base,
+         * or an empty set if it is not in the snapshot. base must be
+         * an object read from this snapshot.
+         */
+        public Set<Obj> getPointsToSet(Obj base, JField field) {
+            int baseId = idOf(base);
+            if (baseId == -1) {
+                return Set.of();
+            }
+            String fieldSig = field.getSignature();
+            IntUnaryOperator key = record -> {
+                int cmp = Integer.compare(buffer.getInt(record), baseId);
+                return cmp != 0 ? cmp :
+                        string(buffer.getInt(record + 4)).compareTo(fieldSig);
+            };
+            return pointsToSetOf(instancesPos, instanceCount, 12, key, 8);
+        }
+
+        /**
+         * @return the points-to set of the indexes of array, or an empty
+         * set if it is not in the snapshot. array must be an object read
+         * from this snapshot.
+         */
+        public Set<Obj> getArrayPointsToSet(Obj array) {
+            int arrayId = idOf(array);
+            if (arrayId == -1) {
+                return Set.of();
+            }
+            IntUnaryOperator key = record ->
+                    Integer.compare(buffer.getInt(record), arrayId);
+            return pointsToSetOf(arraysPos, arrayCount, 8, key, 4);
+        }
+
+        /**
+         * @return the callees of callSite in the snapshot call graph.
+         */
+        public Set<JMethod> getCalleesOf(Invoke callSite) {
+            String caller = callSite.getContainer().getSignature();
+            int index = callSite.getIndex();
+            IntUnaryOperator key = record -> {
+                int cmp = string(buffer.getInt(record)).compareTo(caller);
+                return cmp != 0 ? cmp :
+                        Integer.compare(buffer.getInt(record + 4), index);
+            };
+            Set<JMethod> callees = new LinkedHashSet<>();
+            ClassHierarchy hierarchy = World.get().getClassHierarchy();
+            for (int i = lowerBound(edgesPos, edgeCount, 12, key); i < edgeCount; ++i) {
+                int record = edgesPos + 12 * i;
+                if (key.applyAsInt(record) != 0) {
+                    break;
+                }
+                JMethod callee = hierarchy.getMethod(string(buffer.getInt(record + 8)));
+                if (callee != null) {
+                    callees.add(callee);
+                }
+            }
+            return callees;
+        }
+
+        /**
+         * @return the call graph of the snapshot, with the entries, call
+         * edges and methods which can be resolved in the current program.
+         */
+        @Override
+        public CallGraph<Invoke, JMethod> getCallGraph() {
+            if (callGraph == null) {
+                callGraph = resolveCallGraph();
+            }
+            return callGraph;
+        }
+
+        private CallGraph<Invoke, JMethod> resolveCallGraph() {
+            ClassHierarchy hierarchy = World.get().getClassHierarchy();
+            DefaultCallGraph callGraph = new DefaultCallGraph();
+            for (int i = 0; i < entryCount; ++i) {
+                JMethod entry = hierarchy.getMethod(string(buffer.getInt(entriesPos + 4 * i)));
+                if (entry != null) {
+                    callGraph.addEntryMethod(entry);
+                    callGraph.addReachableMethod(entry);
+                }
+            }
+            for (int i = 0; i < edgeCount; ++i) {
+                int record = edgesPos + 12 * i;
+                JMethod caller = hierarchy.getMethod(string(buffer.getInt(record)));
+                JMethod callee = hierarchy.getMethod(string(buffer.getInt(record + 8)));
+                if (caller == null || caller.isAbstract() || callee == null) {
+                    continue;
+                }
+                IR ir = caller.getIR();
+                int index = buffer.getInt(record + 4);
+                if (index < ir.getStmts().size()
+                        && ir.getStmt(index) instanceof Invoke callSite) {
+                    callGraph.addReachableMethod(caller);
+                    callGraph.addReachableMethod(callee);
+                    callGraph.addEdge(new Edge<>(
+                            CallGraphs.getCallKind(callSite), callSite, callee));
+                }
+            }
+            return callGraph;
+        }
+
+        @Override
+        public Collection<CSVar> getCSVars() {
+            throw unsupported("context-sensitive variables, use getVars()");
+        }
+
+        @Override
+        public Collection<InstanceField> getInstanceFields() {
+            throw unsupported("context-sensitive instance fields, use getPointsToSet(Obj, JField)");
+        }
+
+        @Override
+        public Collection<ArrayIndex> getArrayIndexes() {
+            throw unsupported("context-sensitive array indexes, use getArrayPointsToSet(Obj)");
+        }
+
+        @Override
+        public Collection<StaticField> getStaticFields() {
+            throw unsupported("context-sensitive static fields, use getPointsToSet(JField)");
+        }
+
+        @Override
+        public Set<CSObj> getPointsToSet(CSVar var) {
+            throw unsupported("context-sensitive points-to sets, use getPointsToSet(Var)");
+        }
+
+        @Override
+        public CallGraph<CSCallSite, CSMethod> getCSCallGraph() {
+            throw unsupported("the context-sensitive call graph, use getCallGraph()");
+        }
+
+        private static UnsupportedOperationException unsupported(String what) {
+            return new UnsupportedOperationException(
+                    "A points-to snapshot does not keep " + what);
+        }
+
+        /**
+         * Binary search over count records of given size starting at pos.
+         *
+         * @param key compares the key of the record at a position
+         *            to the searched key
+         * @return the index of the first record whose key is not less
+         * than the searched key.
+         */
+        private static int lowerBound(int pos, int count, int size, IntUnaryOperator key) {
+            int low = 0, high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (key.applyAsInt(pos + size * mid) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @param ptsField offset of the points-to set field in a record
+         * @return the points-to set of the record with the searched key,
+         * or an empty set if there is no such record.
+         */
+        private Set<Obj> pointsToSetOf(int pos, int count, int size,
+                                       IntUnaryOperator key, int ptsField) {
+            int i = lowerBound(pos, count, size, key);
+            int record = pos + size * i;
+            if (i == count || key.applyAsInt(record) != 0) {
+                return Set.of();
+            }
+            int pts = ptsPos + buffer.getInt(record + ptsField);
+            int ptsSize = buffer.getInt(pts);
+            Set<Obj> result = new LinkedHashSet<>(ptsSize * 2);
+            for (int j = 0; j < ptsSize; ++j) {
+                result.add(obj(buffer.getInt(pts + 4 + 4 * j)));
+            }
+            return Collections.unmodifiableSet(result);
+        }
+
+        private String string(int id) {
+            int pos = stringsPos + 4 * stringCount + buffer.getInt(stringsPos + 4 * id);
+            byte[] bytes = new byte[buffer.getInt(pos)];
+            buffer.get(pos + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private Map<String, Var> varsOf(String methodSig) {
+            JMethod method = World.get().getClassHierarchy().getMethod(methodSig);
+            if (method == null || method.isAbstract()) {
+                return Map.of();
+            }
+            Map<String, Var> vars = new HashMap<>();
+            method.getIR().getVars().forEach(var -> vars.put(var.getName(), var));
+            return vars;
+        }
+
+        /**
+         * @return the number of obj in this snapshot, or -1 if obj
+         * was not read from this snapshot.
+         */
+        private int idOf(Obj obj) {
+            return obj instanceof SnapshotObj snapshotObj
+                    && snapshotObj.id < objCount
+                    && objs[snapshotObj.id] == snapshotObj ? snapshotObj.id : -1;
+        }
+
+        private Obj obj(int id) {
+            SnapshotObj obj = objs[id];
+            if (obj == null) {
+                int record = objsPos + 12 * id;
+                int container = buffer.getInt(record + 4);
+                obj = objs[id] = new SnapshotObj(id,
+                        World.get().getTypeSystem().getType(string(buffer.getInt(record))),
+                        container == -1 ? null :
+                                World.get().getClassHierarchy().getMethod(string(container)),
+                        string(buffer.getInt(record + 8)));
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Object read from a snapshot, it stands for the abstract object
+     * of the analysis which wrote the snapshot, and is identified by
+     * its number in the snapshot.
+     */
+    private static final class SnapshotObj extends Obj {
+
+        private final int id;
+
+        private final Type type;
+
+        private final JMethod container;
+
+        private final String desc;
+
+        private SnapshotObj(int id, Type type, JMethod container, String desc) {
+            this.id = id;
+            this.type = type;
+            this.container = container;
+            this.desc = desc;
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public Object getAllocation() {
+            return desc;
+        }
+
+        @Override
+        public Optional<JMethod> getContainerMethod() {
+            return Optional.ofNullable(container);
+        }
+
+        @Override
+        public Type getContainerType() {
+            return container != null ?
+                    container.getDeclaringClass().getType() : type;
+        }
+
+        @Override
+        public String toString() {
+            return desc;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import pascal.taie.analysis.pta.core.heap.HeapModel;
 import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.ir.exp.InvokeExp;
 import pascal.taie.ir.exp.LValue;
+import pascal.taie.ir.IR;
 import pascal.taie.ir.exp.Var;
 import pascal.taie.ir.proginfo.MethodRef;
 import pascal.taie.ir.stmt.*;
@@ -42,8 +43,16 @@ import pascal.taie.language.classes.JMethod;
 import pascal.taie.language.classes.Subsignature;
 import pascal.taie.util.AnalysisException;
 import pascal.taie.language.type.Type;
+import pascal.taie.language.type.TypeSystem;
 
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 class Solver {
@@ -54,9 +63,61 @@ class Solver {
 
     private DefaultCallGraph callGraph;
 
-    private PointerFlowGraph pointerFlowGraph;
+    /**
+     * The PFG, whose edges are kept only in the compact adjacency.
+     */
+    private CompactPFG pointerFlowGraph;
+
+    private BitWorkList workList;
+
+    /**
+     * Objects numbered densely, i.e., index -> object.
+     */
+    private List<Obj> objs;
+
+    private Map<Obj, Integer> objIndex;
+
+    /**
+     * Points-to sets of pointers as bitsets of object indexes,
+     * copied to pointer.getPointsToSet() for the result once solving ends.
+     */
+    private Map<Pointer, HybridBitSet> ptsBits;
+
+    private record PointerEdge(Pointer source, Pointer target) {
+    }
+
+    /**
+     * Union-find of pointers collapsed by cycle detection,
+     * pointer -> (a pointer closer to) its representative.
+     */
+    private Map<Pointer, Pointer> reps;
+
+    /**
+     * Representative -> all pointers collapsed into it.
+     */
+    private Map<Pointer, List<Pointer>> members;
+
+    /**
+     * PFG edges already checked by lazy cycle detection.
+     */
+    private Set<PointerEdge> checkedEdges;
+
+    /**
+     * New edges waiting for the reachable methods being processed.
+     */
+    private List<PointerEdge> edgeBatch;
 
-    private WorkList workList;
+    private int batchDepth;
+
+    private SolverMetrics metrics;
+
+    /**
+     * Time spent in the methods made reachable while processing the current
+     * statement, subtracted from its own time in the metrics.
+     */
+    private long nestedReachableNanos;
+
+    private VarSubstitution varSubstitution;
 
     private StmtProcessor stmtProcessor;
 
@@ -64,8 +125,66 @@ class Solver {
 
     private ClassHierarchy hierarchy;
 
+    private TypeFilter typeFilter;
+
+    /**
+     * System property of the number of threads propagating points-to sets.
+     */
+    static final String PARALLELISM_PROPERTY = "pta.ci.parallelism";
+
+    /**
+     * Number of threads propagating points-to sets, 1 for the sequential solver.
+     */
+    private final int parallelism;
+
+    /**
+     * System properties of the time budget (seconds) and heap budget (MB),
+     * the A5 solver has no analysis options. Exceeding either merges the
+     * largest points-to sets, only the heap budget stops the analysis,
+     * see {@link #checkBudgets}.
+     */
+    static final String TIME_BUDGET_PROPERTY = "pta.ci.time-budget";
+
+    static final String HEAP_BUDGET_PROPERTY = "pta.ci.heap-budget";
+
+    /**
+     * System property of the file to write the points-to snapshot to,
+     * see {@link PointsToSnapshot}.
+     */
+    static final String SNAPSHOT_PROPERTY = "pta.ci.snapshot";
+
+    /**
+     * Budgets are checked once per so many polls.
+     */
+    private static final int POLLS_PER_BUDGET_CHECK = 4096;
+
+    private long polls;
+
+    private long timeBudget;
+
+    /**
+     * Wall-clock deadline in nanos.
+     */
+    private long deadline;
+
+    /**
+     * Heap budget in bytes.
+     */
+    private long heapBudget;
+
+    /**
+     * End of the grace period after the largest points-to sets are merged,
+     * 0 if no budget has been exceeded.
+     */
+    private long graceEnd;
+
     Solver(HeapModel heapModel) {
+        this(heapModel, Integer.getInteger(PARALLELISM_PROPERTY, 1));
+    }
+
+    Solver(HeapModel heapModel, int parallelism) {
         this.heapModel = heapModel;
+        this.parallelism = parallelism;
     }
 
     /**
@@ -74,17 +193,33 @@ class Solver {
     void solve() {
         initialize();
         analyze();
+        writeSnapshot();
     }
 
     /**
      * Initializes pointer analysis.
      */
     private void initialize() {
-        workList = new WorkList();
-        pointerFlowGraph = new PointerFlowGraph();
+        workList = new BitWorkList();
+        objs = new ArrayList<>();
+        objIndex = new HashMap<>();
+        ptsBits = new HashMap<>();
+        reps = new HashMap<>();
+        members = new HashMap<>();
+        checkedEdges = new HashSet<>();
+        edgeBatch = new ArrayList<>();
+        metrics = new SolverMetrics(logger, "ci");
+        timeBudget = budgetProperty(TIME_BUDGET_PROPERTY, 1_000_000_000L);
+        deadline = timeBudget == Long.MAX_VALUE ?
+                Long.MAX_VALUE : System.nanoTime() + timeBudget;
+        heapBudget = budgetProperty(HEAP_BUDGET_PROPERTY, 1024L * 1024L);
+        graceEnd = 0;
+        varSubstitution = new VarSubstitution();
+        pointerFlowGraph = new CompactPFG();
         callGraph = new DefaultCallGraph();
         stmtProcessor = new StmtProcessor();
         hierarchy = World.get().getClassHierarchy();
+        typeFilter = new TypeFilter(World.get().getTypeSystem());
         // initialize main method
         JMethod main = World.get().getMainMethod();
         callGraph.addEntryMethod(main);
@@ -96,11 +231,26 @@ class Solver {
      */
     private void addReachable(JMethod method) {
         if(!callGraph.contains(method)) {
+            long reachableStart = System.nanoTime();
             callGraph.addReachableMethod(method);
+            varSubstitution.addMethod(method);
+            // edges of the method (and of its static callees) are enqueued together
+            ++batchDepth;
             method.getIR().forEach(stmt -> {
                 reachableStmts.add(stmt);
+                long outerNanos = nestedReachableNanos;
+                nestedReachableNanos = 0;
+                long start = System.nanoTime();
                 stmt.accept(stmtProcessor);
+                // the statements of the callees are timed on their own
+                metrics.onStmt(stmt.getClass(), System.nanoTime() - start - nestedReachableNanos);
+                nestedReachableNanos = outerNanos;
             });
+            if(--batchDepth == 0) {
+                edgeBatch.forEach(edge -> enqueueEdge(edge.source(), edge.target()));
+                edgeBatch.clear();
+            }
+            nestedReachableNanos += System.nanoTime() - reachableStart;
         }
     }
 
@@ -110,20 +260,27 @@ class Solver {
     private class StmtProcessor implements StmtVisitor<Void> {
         @Override
         public Void visit(New stmt) {
-            workList.addEntry(pointerFlowGraph.getVarPtr(stmt.getLValue()), new PointsToSet(heapModel.getObj(stmt)));
+            workList.addEntry(varPtrOf(stmt.getLValue()), HybridBitSet.of(indexOf(heapModel.getObj(stmt))));
             return null;
         }
 
         @Override
         public Void visit(Copy stmt) {
-            addPFGEdge(pointerFlowGraph.getVarPtr(stmt.getRValue()), pointerFlowGraph.getVarPtr(stmt.getLValue()));
+            addPFGEdge(varPtrOf(stmt.getRValue()), varPtrOf(stmt.getLValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Cast stmt) {
+            // the objects are filtered by the type of lValue in propagate()
+            addPFGEdge(varPtrOf(stmt.getRValue().getValue()), varPtrOf(stmt.getLValue()));
             return null;
         }
 
         @Override
         public Void visit(LoadField stmt) {
             if(stmt.isStatic()) {
-                addPFGEdge(pointerFlowGraph.getStaticField(stmt.getFieldRef().resolve()), pointerFlowGraph.getVarPtr(stmt.getLValue()));
+                addPFGEdge(pointerFlowGraph.getStaticField(stmt.getFieldRef().resolve()), varPtrOf(stmt.getLValue()));
             }
             return null;
         }
@@ -131,7 +288,7 @@ class Solver {
         @Override
         public Void visit(StoreField stmt) {
             if(stmt.isStatic()) {
-                addPFGEdge(pointerFlowGraph.getVarPtr(stmt.getRValue()), pointerFlowGraph.getStaticField(stmt.getFieldRef().resolve()));
+                addPFGEdge(varPtrOf(stmt.getRValue()), pointerFlowGraph.getStaticField(stmt.getFieldRef().resolve()));
             }
             return null;
         }
@@ -148,14 +305,14 @@ class Solver {
 
                     List<Var> params = m.getIR().getParams();
                     for (int i=0; i<args.size(); i++) {
-                        addPFGEdge(pointerFlowGraph.getVarPtr(args.get(i)), pointerFlowGraph.getVarPtr(params.get(i)));
+                        addPFGEdge(varPtrOf(args.get(i)), varPtrOf(params.get(i)));
                     }
 
                     List<Var> returnVars = m.getIR().getReturnVars();
                     Var lValue = stmt.getLValue();
                     if(lValue != null) {
                         for (Var returnVar : returnVars) {
-                            addPFGEdge(pointerFlowGraph.getVarPtr(returnVar), pointerFlowGraph.getVarPtr(lValue));
+                            addPFGEdge(varPtrOf(returnVar), varPtrOf(lValue));
                         }
                     }
                 }
@@ -169,15 +326,23 @@ class Solver {
      * Adds an edge "source -> target" to the PFG.
      */
     private void addPFGEdge(Pointer source, Pointer target) {
-        if(!pointerFlowGraph.getSuccsOf(source).contains(target)) {
-            pointerFlowGraph.addEdge(source, target);
-            pointerFlowGraph.getPointers().forEach(pointer -> {
-                if(pointer == source) {
-                    if(!pointer.getPointsToSet().isEmpty()) {
-                        workList.addEntry(target, pointer.getPointsToSet());
-                    }
-                }
-            });
+        if(source != target && pointerFlowGraph.addEdge(source, target)) {
+            metrics.onNewEdge();
+            if(batchDepth > 0) {
+                edgeBatch.add(new PointerEdge(source, target));
+            } else {
+                enqueueEdge(source, target);
+            }
+        }
+    }
+
+    /**
+     * Passes the current points-to set of source along a new edge.
+     */
+    private void enqueueEdge(Pointer source, Pointer target) {
+        HybridBitSet bits = bitsOf(source);
+        if(!bits.isEmpty()) {
+            workList.addEntry(target, bits);
         }
     }
 
@@ -185,43 +350,459 @@ class Solver {
      * Processes work-list entries until the work-list is empty.
      */
     private void analyze() {
+        if(parallelism > 1) {
+            analyzeInWaves();
+        }
         while(!workList.isEmpty()) {
-            WorkList.Entry entry = workList.pollEntry();
-            PointsToSet delta = propagate(entry.pointer(), entry.pointsToSet());
-
-            if(entry.pointer() instanceof VarPtr varPtr) {
-                delta.forEach(obj -> {
-                    Var var = varPtr.getVar();
-                    var.getLoadFields().forEach(loadField -> addPFGEdge(pointerFlowGraph.getInstanceField(obj, loadField.getFieldRef().resolve()), pointerFlowGraph.getVarPtr(loadField.getLValue())));
-                    var.getStoreFields().forEach(storeField -> addPFGEdge(pointerFlowGraph.getVarPtr(storeField.getRValue()), pointerFlowGraph.getInstanceField(obj, storeField.getFieldRef().resolve())));
-                    var.getLoadArrays().forEach(loadArray -> addPFGEdge(pointerFlowGraph.getArrayIndex(obj), pointerFlowGraph.getVarPtr(loadArray.getLValue())));
-                    var.getStoreArrays().forEach(storeArray -> addPFGEdge(pointerFlowGraph.getVarPtr(storeArray.getRValue()), pointerFlowGraph.getArrayIndex(obj)));
-                    processCall(var, obj);
-                });
+            metrics.onPoll(workList.size());
+            checkBudgets();
+            BitWorkList.Entry entry = workList.pollEntry();
+            Pointer rep = find(entry.pointer());
+            HybridBitSet delta = propagate(rep, entry.objs());
+            metrics.onPropagate(delta.size());
+            if(!delta.isEmpty()) {
+                for (Pointer member : membersOf(rep)) {
+                    if(member instanceof VarPtr varPtr) {
+                        processVarPtr(varPtr, delta);
+                    }
+                }
             }
         }
+        materializePointsToSets();
+        finishMetrics();
+    }
+
+    private static long budgetProperty(String key, long unit) {
+        long budget = Long.getLong(key, 0);
+        return budget > 0 ? budget * unit : Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks the time and heap budgets. The A5 solver has no contexts to
+     * give up, so when a budget is exceeded, the pointers with the largest
+     * points-to sets are merged, those with the same type filter into one,
+     * which shares a single set (see {@link #collapse}). This is sound,
+     * the merged pointers only gain objects of the types they accept.
+     * <p>
+     * The time budget only triggers the merge, and the degraded analysis
+     * runs to its end. The heap budget is a hard limit: if it is still
+     * exceeded after a grace period, the analysis fails with an
+     * {@link AnalysisException}.
+     */
+    private void checkBudgets() {
+        if(++polls % POLLS_PER_BUDGET_CHECK != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if(now < graceEnd) {
+            return;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        boolean overHeap = usedHeap >= heapBudget;
+        if(now < deadline && !overHeap) {
+            return;
+        }
+        if(graceEnd == 0) {
+            Map<Type, List<Pointer>> groups = new HashMap<>();
+            ptsBits.entrySet()
+                    .stream()
+                    .sorted(Comparator.comparingInt(
+                            (Map.Entry<Pointer, HybridBitSet> e) -> e.getValue().size()).reversed())
+                    .limit(Math.max(2, ptsBits.size() / 100))
+                    .map(Map.Entry::getKey)
+                    .forEach(rep -> groups.computeIfAbsent(filterTypeOf(rep), t -> new ArrayList<>()).add(rep));
+            logger.warn("Budget exceeded (used heap {} MB), merging the largest points-to sets into {} groups",
+                    usedHeap / (1024 * 1024), groups.size());
+            groups.values().stream().filter(group -> group.size() > 1).forEach(this::collapse);
+            graceEnd = now + (timeBudget == Long.MAX_VALUE ? 10_000_000_000L : timeBudget / 4);
+        } else if(overHeap) {
+            throw new AnalysisException(String.format(
+                    "Pointer analysis exceeded its heap budget (used heap %d MB of %d MB)"
+                            + " even after merging the largest points-to sets",
+                    usedHeap / (1024 * 1024), heapBudget / (1024 * 1024)));
+        }
+        // else only the time budget is exceeded, the degraded analysis finishes
+    }
+
+    private void finishMetrics() {
+        metrics.put("reachableMethods", callGraph.reachableMethods().count());
+        metrics.put("pfgNodes", pointerFlowGraph.size());
+        metrics.put("objects", objs.size());
+        metrics.put("collapsedPointers", members.values().stream().mapToInt(List::size).sum());
+        metrics.put("substitutedVars", varSubstitution.getSubstitutedVars().size());
+        String report = metrics.finish(callGraph.reachableMethods()
+                .flatMap(method -> method.getIR().getVars().stream())
+                .mapToInt(var -> bitsOf(varPtrOf(var)).size()));
+        logger.info("Pointer analysis metrics: {}", report);
+    }
+
+    /**
+     * Processes the work-list in topological waves. The pending pointers are
+     * bucketed by their level in the condensation of the PFG, i.e., all PFG
+     * predecessors of a pointer outside its SCC have lower levels, and
+     * each wave takes the bucket of the lowest level. Its pointers union
+     * their pending objects in parallel, each one only writes its own set,
+     * so the unions need no locks. Then a sequential phase passes the deltas
+     * to the successors, which wait in the buckets of higher levels, and
+     * adds new edges for field/array accesses and calls.
+     * <p>
+     * The levels are kept between waves and recomputed once per |levels|
+     * polled entries, as for the TOPO order of the CS solver, so the cost
+     * of leveling is amortized. Stale levels only affect the order, since
+     * every delta goes through the work-list.
+     */
+    private void analyzeInWaves() {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Map<Pointer, Integer> levels = Map.of();
+        long pollsSinceLeveling = 0;
+        TreeMap<Integer, Map<Pointer, HybridBitSet>> buckets = new TreeMap<>();
+        try {
+            while(!workList.isEmpty() || !buckets.isEmpty()) {
+                if(pollsSinceLeveling > levels.size()) {
+                    // the entries in buckets are leveled again, too
+                    buckets.values().forEach(bucket ->
+                            bucket.forEach(workList::addEntry));
+                    buckets.clear();
+                    levels = computeLevels(workList.pointers());
+                    pollsSinceLeveling = 0;
+                }
+                while(!workList.isEmpty()) {
+                    metrics.onPoll(workList.size());
+                    checkBudgets();
+                    ++pollsSinceLeveling;
+                    BitWorkList.Entry entry = workList.pollEntry();
+                    int level = levels.getOrDefault(find(entry.pointer()), Integer.MAX_VALUE);
+                    // the entry set is owned by us, see BitWorkList
+                    buckets.computeIfAbsent(level, l -> new HashMap<>())
+                            .merge(entry.pointer(), entry.objs(), Solver::unionInto);
+                }
+                // representatives may change by collapsing, re-key the wave
+                Map<Pointer, HybridBitSet> wave = new HashMap<>();
+                buckets.pollFirstEntry().getValue().forEach((pointer, objs) ->
+                        wave.merge(find(pointer), objs, Solver::unionInto));
+                // ptsBits must not be modified in the parallel phase
+                wave.keySet().forEach(this::bitsOf);
+                List<Pointer> pointers = new ArrayList<>(wave.keySet());
+                Map<Pointer, HybridBitSet> deltas = new ConcurrentHashMap<>();
+                pool.submit(() -> pointers.parallelStream().forEach(pointer -> {
+                    HybridBitSet ptn = ptsBits.get(pointer);
+                    HybridBitSet delta = filterByType(pointer, wave.get(pointer).minus(ptn));
+                    ptn.addAll(delta);
+                    deltas.put(pointer, delta);
+                })).get();
+                for (Pointer pointer : pointers) {
+                    HybridBitSet delta = deltas.get(pointer);
+                    metrics.onPropagate(delta.size());
+                    if(!delta.isEmpty()) {
+                        forEachSucc(pointer, succ -> workList.addEntry(succ, delta));
+                        for (Pointer member : membersOf(pointer)) {
+                            if(member instanceof VarPtr varPtr) {
+                                processVarPtr(varPtr, delta);
+                            }
+                        }
+                    }
+                }
+                // cycles are collapsed after all deltas are passed on,
+                // as collapsing changes the members of the pointers
+                for (Pointer pointer : pointers) {
+                    if(deltas.get(pointer).isEmpty() && !wave.get(pointer).isEmpty()
+                            && find(pointer) == pointer) {
+                        detectCycles(pointer);
+                    }
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AnalysisException("Parallel points-to propagation failed", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static HybridBitSet unionInto(HybridBitSet target, HybridBitSet source) {
+        target.addAll(source);
+        return target;
+    }
+
+    /**
+     * Levels the representatives reachable from roots by the condensation
+     * of the PFG, i.e., the members of an SCC share a level, which is higher
+     * than the levels of all SCCs reaching it.
+     */
+    private Map<Pointer, Integer> computeLevels(Collection<Pointer> roots) {
+        Function<Pointer, Collection<Pointer>> succs = rep -> {
+            Set<Pointer> result = new LinkedHashSet<>();
+            forEachSucc(rep, result::add);
+            return result;
+        };
+        List<List<Pointer>> sccs = SCCFinder.find(
+                roots.stream().map(this::find).distinct().toList(), succs);
+        Map<Pointer, Integer> levels = new HashMap<>();
+        // reverse of the SCC order is topological
+        for (int i = sccs.size() - 1; i >= 0; --i) {
+            Set<Pointer> scc = new HashSet<>(sccs.get(i));
+            int level = scc.stream().mapToInt(rep -> levels.getOrDefault(rep, 0)).max().orElse(0);
+            for (Pointer rep : scc) {
+                levels.put(rep, level);
+            }
+            for (Pointer rep : scc) {
+                for (Pointer succ : succs.apply(rep)) {
+                    if(!scc.contains(succ)) {
+                        levels.merge(succ, level + 1, Math::max);
+                    }
+                }
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Processes field/array accesses and instance calls on the variable
+     * for the objects newly pointed by it.
+     */
+    private void processVarPtr(VarPtr varPtr, HybridBitSet delta) {
+        List<Var> vars = varSubstitution.varsOf(varPtr.getVar());
+        delta.forEach(index -> {
+            Obj obj = objs.get(index);
+            for (Var var : vars) {
+                var.getLoadFields().forEach(loadField -> addPFGEdge(pointerFlowGraph.getInstanceField(obj, loadField.getFieldRef().resolve()), varPtrOf(loadField.getLValue())));
+                var.getStoreFields().forEach(storeField -> addPFGEdge(varPtrOf(storeField.getRValue()), pointerFlowGraph.getInstanceField(obj, storeField.getFieldRef().resolve())));
+                var.getLoadArrays().forEach(loadArray -> addPFGEdge(pointerFlowGraph.getArrayIndex(obj), varPtrOf(loadArray.getLValue())));
+                var.getStoreArrays().forEach(storeArray -> addPFGEdge(varPtrOf(storeArray.getRValue()), pointerFlowGraph.getArrayIndex(obj)));
+                processCall(var, obj);
+            }
+        });
     }
 
     /**
      * Propagates pointsToSet to pt(pointer) and its PFG successors,
      * returns the difference set of pointsToSet and pt(pointer).
+     * The pointer must be a representative.
      */
-    private PointsToSet propagate(Pointer pointer, PointsToSet pts) {
-        PointsToSet delta = new PointsToSet();
-        PointsToSet ptn = pointer.getPointsToSet();
-        if(!pts.isEmpty()) {
-            pts.objects().filter(obj -> !ptn.contains(obj)).forEach(obj -> {
-                ptn.addObject(obj);
-                delta.addObject(obj);
-            });
-        }
+    private HybridBitSet propagate(Pointer pointer, HybridBitSet pts) {
+        HybridBitSet ptn = bitsOf(pointer);
+        HybridBitSet delta = filterByType(pointer, pts.minus(ptn));
         if(!delta.isEmpty()) {
-            pointerFlowGraph.getSuccsOf(pointer).forEach(succPointer -> workList.addEntry(succPointer, delta));
+            ptn.addAll(delta);
+            forEachSucc(pointer, succPointer -> workList.addEntry(succPointer, delta));
+        } else if(!pts.isEmpty()) {
+            // nothing new arrives, maybe the objects are running around a cycle
+            detectCycles(pointer);
         }
 
         return delta;
     }
 
+    /**
+     * Drops the objects which cannot be assigned to the declared type of
+     * the variable. Only pointers with the same filter type are collapsed,
+     * so the filter of a representative is the filter of all its members.
+     */
+    private HybridBitSet filterByType(Pointer pointer, HybridBitSet pts) {
+        Type type = filterTypeOf(pointer);
+        if(pts.isEmpty() || type == null) {
+            return pts;
+        }
+        HybridBitSet filtered = new HybridBitSet();
+        pts.forEach(index -> {
+            if(typeFilter.isAssignable(type, objs.get(index).getType())) {
+                filtered.add(index);
+            }
+        });
+        return filtered.size() == pts.size() ? pts : filtered;
+    }
+
+    /**
+     * @return the declared type which filters the objects flowing into
+     * the pointer, or null if the pointer accepts any object.
+     */
+    private static Type filterTypeOf(Pointer pointer) {
+        return pointer instanceof VarPtr varPtr ? varPtr.getVar().getType() : null;
+    }
+
+    /**
+     * @return true if the representatives filter objects by the same type,
+     * so they end up with equal points-to sets when they form a cycle, and
+     * collapsing them loses no precision. A cycle through, e.g., a cast to
+     * a narrower type is not collapsed, its members keep their own filters.
+     */
+    private static boolean haveSameFilter(List<Pointer> reps) {
+        Type type = filterTypeOf(reps.get(0));
+        return reps.stream().allMatch(rep -> Objects.equals(filterTypeOf(rep), type));
+    }
+
+    /**
+     * Lazy cycle detection: checks the successors whose points-to sets equal
+     * the pointer's, and collapses the cycles reachable from them.
+     */
+    private void detectCycles(Pointer pointer) {
+        HybridBitSet ptn = bitsOf(pointer);
+        List<Pointer> candidates = new ArrayList<>();
+        forEachSucc(pointer, succ -> {
+            if(checkedEdges.add(new PointerEdge(pointer, succ)) && bitsOf(succ).sameAs(ptn)) {
+                candidates.add(succ);
+            }
+        });
+        for (Pointer candidate : candidates) {
+            List<List<Pointer>> sccs = SCCFinder.find(List.of(find(candidate)), rep -> {
+                Set<Pointer> succs = new LinkedHashSet<>();
+                forEachSucc(rep, succs::add);
+                return succs;
+            });
+            sccs.stream()
+                    .filter(scc -> scc.size() > 1 && haveSameFilter(scc))
+                    .forEach(this::collapse);
+        }
+    }
+
+    /**
+     * Collapses the representatives of a PFG cycle, or of the largest
+     * points-to sets when a budget is exceeded, into one, which shares
+     * a single points-to set. Members which gain objects by the merge
+     * pass them to their successors and process them as usual.
+     */
+    private void collapse(List<Pointer> scc) {
+        Pointer rep = scc.get(0);
+        HybridBitSet union = new HybridBitSet();
+        Map<Pointer, HybridBitSet> oldBits = new LinkedHashMap<>();
+        for (Pointer p : scc) {
+            HybridBitSet bits = bitsOf(p);
+            union.addAll(bits);
+            membersOf(p).forEach(member -> oldBits.put(member, bits));
+        }
+        for (Pointer p : scc) {
+            if(p != rep) {
+                reps.put(p, rep);
+                ptsBits.remove(p);
+                members.remove(p);
+            }
+        }
+        ptsBits.put(rep, union);
+        members.put(rep, new ArrayList<>(oldBits.keySet()));
+        oldBits.forEach((member, bits) -> {
+            HybridBitSet extra = filterByType(member, union.minus(bits));
+            if(!extra.isEmpty()) {
+                int node = pointerFlowGraph.indexOf(member);
+                for (int i = 0; i < pointerFlowGraph.succCountOf(node); ++i) {
+                    Pointer succ = pointerFlowGraph.pointerAt(pointerFlowGraph.succOf(node, i));
+                    if(find(succ) != rep) {
+                        workList.addEntry(succ, extra);
+                    }
+                }
+                if(member instanceof VarPtr varPtr) {
+                    processVarPtr(varPtr, extra);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the points-to sets of the result from the bitsets, once
+     * solving ends: each member of a collapsed cycle and each variable
+     * substituted before solving gets the set of its representative,
+     * so the result is transparent to both.
+     */
+    private void materializePointsToSets() {
+        ptsBits.forEach((rep, bits) -> {
+            for (Pointer member : membersOf(rep)) {
+                addObjects(member.getPointsToSet(), bits);
+            }
+        });
+        varSubstitution.getSubstitutedVars().forEach(var ->
+                addObjects(pointerFlowGraph.getVarPtr(var).getPointsToSet(), bitsOf(varPtrOf(var))));
+    }
+
+    private void addObjects(PointsToSet pointsToSet, HybridBitSet bits) {
+        bits.forEach(index -> pointsToSet.addObject(objs.get(index)));
+    }
+
+    /**
+     * Writes the points-to result to the file given by system property
+     * {@value #SNAPSHOT_PROPERTY}, so that downstream analyses can read it
+     * without re-running the analysis.
+     */
+    private void writeSnapshot() {
+        String snapshot = System.getProperty(SNAPSHOT_PROPERTY);
+        if(snapshot == null) {
+            return;
+        }
+        PointsToSnapshot.Heap heap = new PointsToSnapshot.Heap();
+        ptsBits.forEach((rep, bits) -> {
+            List<Obj> pts = objectsOf(bits);
+            for (Pointer member : membersOf(rep)) {
+                if(member instanceof StaticField field) {
+                    heap.addStaticField(field.getField(), pts);
+                } else if(member instanceof InstanceField field) {
+                    heap.addInstanceField(field.getBase(), field.getField(), pts);
+                } else if(member instanceof ArrayIndex index) {
+                    heap.addArrayIndex(index.getArray(), pts);
+                }
+            }
+        });
+        List<Var> vars = callGraph.reachableMethods()
+                .flatMap(method -> method.getIR().getVars().stream())
+                .toList();
+        PointsToSnapshot.write(Paths.get(snapshot), vars,
+                var -> objectsOf(ptsBits.getOrDefault(find(varPtrOf(var)), new HybridBitSet())),
+                heap, callGraph);
+    }
+
+    private List<Obj> objectsOf(HybridBitSet bits) {
+        List<Obj> objects = new ArrayList<>(bits.size());
+        bits.forEach(index -> objects.add(objs.get(index)));
+        return objects;
+    }
+
+    /**
+     * @return the PFG node of the variable, or of its representative
+     * if the variable is substituted.
+     */
+    private VarPtr varPtrOf(Var var) {
+        return pointerFlowGraph.getVarPtr(varSubstitution.repOf(var));
+    }
+
+    private Pointer find(Pointer pointer) {
+        Pointer parent = reps.get(pointer);
+        if(parent == null) {
+            return pointer;
+        }
+        Pointer rep = find(parent);
+        if(rep != parent) {
+            reps.put(pointer, rep);
+        }
+        return rep;
+    }
+
+    private List<Pointer> membersOf(Pointer rep) {
+        return members.getOrDefault(rep, List.of(rep));
+    }
+
+    /**
+     * Visits the representatives of PFG successors of all members of rep.
+     */
+    private void forEachSucc(Pointer rep, Consumer<Pointer> action) {
+        for (Pointer member : membersOf(rep)) {
+            int node = pointerFlowGraph.indexOf(member);
+            for (int i = 0; i < pointerFlowGraph.succCountOf(node); ++i) {
+                Pointer succRep = find(pointerFlowGraph.pointerAt(pointerFlowGraph.succOf(node, i)));
+                if(succRep != rep) {
+                    action.accept(succRep);
+                }
+            }
+        }
+    }
+
+    private int indexOf(Obj obj) {
+        return objIndex.computeIfAbsent(obj, o -> {
+            objs.add(o);
+            return objs.size() - 1;
+        });
+    }
+
+    private HybridBitSet bitsOf(Pointer pointer) {
+        return ptsBits.computeIfAbsent(find(pointer), p -> new HybridBitSet());
+    }
+
     /**
      * Processes instance calls when points-to set of the receiver variable changes.
      *
@@ -231,7 +812,11 @@ class Solver {
     private void processCall(Var var, Obj recv) {
         var.getInvokes().forEach(callSite -> {
             JMethod m = resolveCallee(recv, callSite);
-            workList.addEntry(pointerFlowGraph.getVarPtr(m.getIR().getThis()), new PointsToSet(recv));
+            if(m == null) {
+                // recv cannot dispatch the call, e.g., abstract or mistyped
+                return;
+            }
+            workList.addEntry(varPtrOf(m.getIR().getThis()), HybridBitSet.of(indexOf(recv)));
             if(!callGraph.getCalleesOf(callSite).contains(m)) {
                 callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(callSite), callSite, m));
                 addReachable(m);
@@ -241,14 +826,14 @@ class Solver {
 
                 List<Var> params = jMethod.getIR().getParams();
                 for (int i=0; i<args.size(); i++) {
-                    addPFGEdge(pointerFlowGraph.getVarPtr(args.get(i)), pointerFlowGraph.getVarPtr(params.get(i)));
+                    addPFGEdge(varPtrOf(args.get(i)), varPtrOf(params.get(i)));
                 }
 
                 List<Var> returnVars = jMethod.getIR().getReturnVars();
                 Var lValue = callSite.getLValue();
                 if(lValue != null) {
                     for (Var returnVar : returnVars) {
-                        addPFGEdge(pointerFlowGraph.getVarPtr(returnVar), pointerFlowGraph.getVarPtr(lValue));
+                        addPFGEdge(varPtrOf(returnVar), varPtrOf(lValue));
                     }
                 }
             }
@@ -272,3 +857,490 @@ class Solver {
         return new CIPTAResult(pointerFlowGraph, callGraph);
     }
 }
+
+/**
+ * Work-list whose entries carry object indexes instead of {@link PointsToSet}.
+ * It keeps one pending bitset per pointer, so the entries added for
+ * a pointer before it is polled are propagated at once.
+ */
+class BitWorkList {
+
+    record Entry(Pointer pointer, HybridBitSet objs) {
+    }
+
+    /**
+     * Pointer -> union of its pending object indexes, in FIFO order.
+     */
+    private final Map<Pointer, HybridBitSet> pending = new LinkedHashMap<>();
+
+    void addEntry(Pointer pointer, HybridBitSet objs) {
+        // always union into a set of our own, objs may be shared
+        pending.computeIfAbsent(pointer, p -> new HybridBitSet()).addAll(objs);
+    }
+
+    Entry pollEntry() {
+        Iterator<Map.Entry<Pointer, HybridBitSet>> it = pending.entrySet().iterator();
+        Map.Entry<Pointer, HybridBitSet> first = it.next();
+        it.remove();
+        return new Entry(first.getKey(), first.getValue());
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return the pointers which have pending objects.
+     */
+    Set<Pointer> pointers() {
+        return pending.keySet();
+    }
+}
+
+/**
+ * Set of object indexes. Small sets are kept as a sorted int array,
+ * sets larger than {@link #SPARSE_LIMIT} switch to a {@link BitSet},
+ * on which difference and union are word-level operations.
+ */
+class HybridBitSet {
+
+    private static final int SPARSE_LIMIT = 32;
+
+    private int[] sparse = new int[4];
+
+    private BitSet dense;
+
+    private int size;
+
+    static HybridBitSet of(int index) {
+        HybridBitSet set = new HybridBitSet();
+        set.add(index);
+        return set;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int index) {
+        return dense != null ? dense.get(index) :
+                Arrays.binarySearch(sparse, 0, size, index) >= 0;
+    }
+
+    boolean add(int index) {
+        if (dense != null) {
+            if (dense.get(index)) {
+                return false;
+            }
+            dense.set(index);
+            ++size;
+            return true;
+        }
+        int pos = Arrays.binarySearch(sparse, 0, size, index);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -pos - 1;
+        if (size == sparse.length) {
+            sparse = Arrays.copyOf(sparse, size * 2);
+        }
+        System.arraycopy(sparse, pos, sparse, pos + 1, size - pos);
+        sparse[pos] = index;
+        if (++size > SPARSE_LIMIT) {
+            toDense();
+        }
+        return true;
+    }
+
+    /**
+     * @return true if this set and other have the same elements.
+     */
+    boolean sameAs(HybridBitSet other) {
+        if (size != other.size) {
+            return false;
+        }
+        if (dense != null && other.dense != null) {
+            return dense.equals(other.dense);
+        }
+        boolean[] same = {true};
+        forEach(index -> same[0] &= other.contains(index));
+        return same[0];
+    }
+
+    /**
+     * Adds all elements of other to this set.
+     */
+    void addAll(HybridBitSet other) {
+        if (other.dense != null) {
+            if (dense == null) {
+                toDense();
+            }
+            dense.or(other.dense);
+            size = dense.cardinality();
+        } else {
+            other.forEach(this::add);
+        }
+    }
+
+    /**
+     * @return a new set of the elements in this set but not in other.
+     */
+    HybridBitSet minus(HybridBitSet other) {
+        HybridBitSet result = new HybridBitSet();
+        if (dense != null) {
+            BitSet bits = (BitSet) dense.clone();
+            if (other.dense != null) {
+                bits.andNot(other.dense);
+            } else {
+                other.forEach(bits::clear);
+            }
+            result.dense = bits;
+            result.size = bits.cardinality();
+        } else {
+            forEach(index -> {
+                if (!other.contains(index)) {
+                    result.add(index);
+                }
+            });
+        }
+        return result;
+    }
+
+    void forEach(IntConsumer action) {
+        if (dense != null) {
+            dense.stream().forEach(action);
+        } else {
+            for (int i = 0; i < size; ++i) {
+                action.accept(sparse[i]);
+            }
+        }
+    }
+
+    private void toDense() {
+        dense = new BitSet();
+        for (int i = 0; i < size; ++i) {
+            dense.set(sparse[i]);
+        }
+        sparse = null;
+    }
+}
+
+/**
+ * Iterative Tarjan's algorithm for strongly connected components.
+ */
+final class SCCFinder {
+
+    private SCCFinder() {
+    }
+
+    /**
+     * Finds the SCCs reachable from given roots.
+     *
+     * @return the SCCs in reverse topological order, i.e., every SCC comes
+     * after all SCCs reachable from it.
+     */
+    static <N> List<List<N>> find(Iterable<N> roots, Function<N, ? extends Collection<N>> succs) {
+        Map<N, Integer> index = new HashMap<>();
+        Map<N, Integer> lowLink = new HashMap<>();
+        Deque<N> stack = new ArrayDeque<>();
+        Set<N> onStack = new HashSet<>();
+        Deque<Map.Entry<N, Iterator<N>>> callStack = new ArrayDeque<>();
+        List<List<N>> sccs = new ArrayList<>();
+        for (N root : roots) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            callStack.push(Map.entry(root, succs.apply(root).iterator()));
+            while (!callStack.isEmpty()) {
+                N node = callStack.peek().getKey();
+                Iterator<N> it = callStack.peek().getValue();
+                if (it.hasNext()) {
+                    N succ = it.next();
+                    if (!index.containsKey(succ)) {
+                        index.put(succ, index.size());
+                        lowLink.put(succ, index.get(succ));
+                        stack.push(succ);
+                        onStack.add(succ);
+                        callStack.push(Map.entry(succ, succs.apply(succ).iterator()));
+                    } else if (onStack.contains(succ)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(succ)));
+                    }
+                } else {
+                    callStack.pop();
+                    if (!callStack.isEmpty()) {
+                        N parent = callStack.peek().getKey();
+                        lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                    }
+                    if (lowLink.get(node).equals(index.get(node))) {
+                        List<N> scc = new ArrayList<>();
+                        N member;
+                        do {
+                            member = stack.pop();
+                            onStack.remove(member);
+                            scc.add(member);
+                        } while (!member.equals(node));
+                        sccs.add(scc);
+                    }
+                }
+            }
+        }
+        return sccs;
+    }
+}
+
+/**
+ * Offline variable substitution: finds the variables that are pointer
+ * equivalent to another variable before solving, i.e., the temporaries
+ * whose only definition is a copy, and maps copy chains of them
+ * to the variable at the head of the chain.
+ */
+class VarSubstitution {
+
+    private final Set<JMethod> methods = new HashSet<>();
+
+    /**
+     * Substituted variable -> its representative.
+     */
+    private final Map<Var, Var> reps = new HashMap<>();
+
+    /**
+     * Representative -> the variables substituted by it.
+     */
+    private final Map<Var, List<Var>> substitutes = new HashMap<>();
+
+    /**
+     * Finds the substitutable variables of given method, once per method.
+     */
+    void addMethod(JMethod method) {
+        if (!methods.add(method)) {
+            return;
+        }
+        IR ir = method.getIR();
+        Map<Var, Integer> defCounts = new HashMap<>();
+        Map<Var, Var> copySources = new HashMap<>();
+        for (Stmt stmt : ir) {
+            stmt.getDef().ifPresent(def -> {
+                if (def instanceof Var var) {
+                    defCounts.merge(var, 1, Integer::sum);
+                }
+            });
+            if (stmt instanceof Copy copy) {
+                copySources.put(copy.getLValue(), copy.getRValue());
+            }
+        }
+        // parameters and this are also defined by the calls
+        Set<Var> implicitDefs = new HashSet<>(ir.getParams());
+        if (ir.getThis() != null) {
+            implicitDefs.add(ir.getThis());
+        }
+        copySources.keySet().removeIf(var ->
+                defCounts.get(var) != 1 || implicitDefs.contains(var));
+        copySources.keySet().forEach(var -> {
+            Var rep = var;
+            Set<Var> visited = new HashSet<>();
+            while (copySources.containsKey(rep) && visited.add(rep)) {
+                rep = copySources.get(rep);
+            }
+            if (rep != var) {
+                reps.put(var, rep);
+                substitutes.computeIfAbsent(rep, r -> new ArrayList<>()).add(var);
+            }
+        });
+    }
+
+    Var repOf(Var var) {
+        return reps.getOrDefault(var, var);
+    }
+
+    /**
+     * @return the representative and all variables substituted by it.
+     */
+    List<Var> varsOf(Var rep) {
+        List<Var> vars = substitutes.get(rep);
+        if (vars == null) {
+            return List.of(rep);
+        }
+        List<Var> result = new ArrayList<>(vars.size() + 1);
+        result.add(rep);
+        result.addAll(vars);
+        return result;
+    }
+
+    boolean isSubstituted(Var var) {
+        return reps.containsKey(var);
+    }
+
+    Set<Var> getSubstitutedVars() {
+        return reps.keySet();
+    }
+}
+
+/**
+ * Decides whether objects may flow to a variable by its declared type.
+ * Results are cached by (declared type, object type), as there are
+ * far fewer types than objects.
+ */
+class TypeFilter {
+
+    private final TypeSystem typeSystem;
+
+    private final Map<Type, Map<Type, Boolean>> assignable = new ConcurrentHashMap<>();
+
+    TypeFilter(TypeSystem typeSystem) {
+        this.typeSystem = typeSystem;
+    }
+
+    boolean isAssignable(Type declaredType, Type objType) {
+        return assignable.computeIfAbsent(declaredType, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(objType, t -> {
+                    synchronized (typeSystem) {
+                        return typeSystem.isSubtype(declaredType, t);
+                    }
+                });
+    }
+}
+
+/**
+ * PFG with compact adjacency, the pointers are numbered densely and
+ * successors are kept in growable int arrays (CSR-like rows), instead of
+ * the multimap of {@link PointerFlowGraph}, which only keeps the pointers.
+ * Duplicate edges are found by a linear scan of short rows, and by
+ * a hash set for the rows longer than {@link #LINEAR_LIMIT}.
+ */
+class CompactPFG extends PointerFlowGraph {
+
+    private static final int LINEAR_LIMIT = 16;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final List<Pointer> pointers = new ArrayList<>();
+
+    private final Map<Pointer, Integer> indexes = new HashMap<>();
+
+    private int[][] succs = new int[64][];
+
+    private int[] succCounts = new int[64];
+
+    /**
+     * Node -> its successors, only for the rows longer than LINEAR_LIMIT.
+     */
+    private final Map<Integer, Set<Integer>> succSets = new HashMap<>();
+
+    int indexOf(Pointer pointer) {
+        Integer index = indexes.get(pointer);
+        if (index == null) {
+            index = pointers.size();
+            pointers.add(pointer);
+            indexes.put(pointer, index);
+            if (index == succs.length) {
+                succs = Arrays.copyOf(succs, index * 2);
+                succCounts = Arrays.copyOf(succCounts, index * 2);
+            }
+            succs[index] = EMPTY;
+        }
+        return index;
+    }
+
+    int size() {
+        return pointers.size();
+    }
+
+    Pointer pointerAt(int index) {
+        return pointers.get(index);
+    }
+
+    /**
+     * @return true if the edge is new.
+     */
+    @Override
+    boolean addEdge(Pointer source, Pointer target) {
+        int s = indexOf(source);
+        int t = indexOf(target);
+        int count = succCounts[s];
+        int[] row = succs[s];
+        if (count <= LINEAR_LIMIT) {
+            for (int i = 0; i < count; ++i) {
+                if (row[i] == t) {
+                    return false;
+                }
+            }
+        } else if (succSets.get(s).contains(t)) {
+            return false;
+        }
+        if (count == row.length) {
+            row = succs[s] = Arrays.copyOf(row, Math.max(4, count * 2));
+        }
+        row[count] = t;
+        succCounts[s] = ++count;
+        if (count == LINEAR_LIMIT + 1) {
+            Set<Integer> set = new HashSet<>();
+            for (int i = 0; i < count; ++i) {
+                set.add(row[i]);
+            }
+            succSets.put(s, set);
+        } else if (count > LINEAR_LIMIT + 1) {
+            succSets.get(s).add(t);
+        }
+        return true;
+    }
+
+    /**
+     * @return a read-only view of the successors of pointer.
+     */
+    @Override
+    Set<Pointer> getSuccsOf(Pointer pointer) {
+        Integer node = indexes.get(pointer);
+        if (node == null) {
+            return Set.of();
+        }
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Pointer> iterator() {
+                return new Iterator<>() {
+                    private int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < succCounts[node];
+                    }
+
+                    @Override
+                    public Pointer next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return pointers.get(succs[node][i++]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return succCounts[node];
+            }
+        };
+    }
+
+    int succCountOf(int node) {
+        return succCounts[node];
+    }
+
+    /**
+     * @return the i-th successor of node, 0 <= i < succCountOf(node).
+     */
+    int succOf(int node, int i) {
+        return succs[node][i];
+    }
+}
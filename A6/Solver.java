@@ -48,26 +48,64 @@ import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.analysis.pta.pts.PointsToSet;
 import pascal.taie.analysis.pta.pts.PointsToSetFactory;
 import pascal.taie.config.AnalysisOptions;
+import pascal.taie.ir.IR;
 import pascal.taie.ir.exp.InvokeExp;
 import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Cast;
 import pascal.taie.ir.stmt.Copy;
 import pascal.taie.ir.stmt.Invoke;
 import pascal.taie.ir.stmt.LoadArray;
 import pascal.taie.ir.stmt.LoadField;
 import pascal.taie.ir.stmt.New;
+import pascal.taie.ir.stmt.Stmt;
 import pascal.taie.ir.stmt.StmtVisitor;
 import pascal.taie.ir.stmt.StoreArray;
 import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.JClass;
 import pascal.taie.language.classes.JField;
 import pascal.taie.language.classes.JMethod;
 import pascal.taie.language.type.Type;
-
+import pascal.taie.language.type.TypeSystem;
+import pascal.taie.util.AnalysisException;
+
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-
-class Solver {
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class Solver {
 
     private static final Logger logger = LogManager.getLogger(Solver.class);
 
+    /**
+     * Key of the solver in the results it returns, so that clients of
+     * the pointer analysis can reach the incremental API, e.g.,
+     * {@code pta.<Solver>getResult(Solver.RESULT_KEY).addEntryMethods(...)}.
+     */
+    public static final String RESULT_KEY = Solver.class.getName();
+
+    /**
+     * Key of the marker stored in the results which are out of date
+     * after an incremental run, see {@link #isStale}.
+     */
+    private static final String STALE_KEY = Solver.class.getName() + ".stale";
+
     private final AnalysisOptions options;
 
     private final HeapModel heapModel;
@@ -80,7 +118,59 @@ class Solver {
 
     private PointerFlowGraph pointerFlowGraph;
 
-    private WorkList workList;
+    private CoalescingWorkList workList;
+
+    private SolverMetrics metrics;
+
+    /**
+     * Time spent in the methods made reachable while processing the current
+     * statement, subtracted from its own time in the metrics.
+     */
+    private long nestedReachableNanos;
+
+    /**
+     * Budgets are checked once per so many polls.
+     */
+    private static final int POLLS_PER_BUDGET_CHECK = 4096;
+
+    private long polls;
+
+    /**
+     * Wall-clock deadline in nanos, from option "time-budget" (seconds).
+     * Past it, contexts created from then on are (partly) context-insensitive,
+     * the analysis is not stopped, see {@link #checkBudgets}.
+     */
+    private long deadline;
+
+    private long timeBudget;
+
+    /**
+     * Heap budget in bytes, from option "heap-budget" (MB). Past it, contexts
+     * created from then on are (partly) context-insensitive, which does not
+     * free the existing ones, and the analysis fails if that is not enough,
+     * see {@link #checkBudgets}.
+     */
+    private long heapBudget;
+
+    /**
+     * Methods analyzed context-insensitively after a budget is exceeded.
+     */
+    private Set<JMethod> ciMethods;
+
+    /**
+     * Whether all methods are analyzed context-insensitively.
+     */
+    private boolean allCI;
+
+    /**
+     * End of the grace period after the first time a budget is exceeded,
+     * 0 if no budget has been exceeded.
+     */
+    private long graceEnd;
+
+    private VarSubstitution varSubstitution;
+
+    private TypeFilter typeFilter;
 
     private PointerAnalysisResult result;
 
@@ -94,13 +184,114 @@ class Solver {
     void solve() {
         initialize();
         analyze();
+        writeSnapshot();
+    }
+
+    /**
+     * Adds entry methods to a solved analysis incrementally. The solved
+     * state (CS elements, call graph, PFG and points-to sets) is kept, and
+     * only the constraints introduced by the new entries, and by the methods
+     * and classes they reach, are pushed through the work-list.
+     * <p>
+     * The results returned before are out of date afterwards, they are
+     * marked so (see {@link #isStale}), and the caller should use
+     * the returned result instead, e.g., store it to the World again.
+     * Each incremental run gets its own budgets and metrics report.
+     *
+     * @return the result of the updated analysis.
+     */
+    public PointerAnalysisResult addEntryMethods(Collection<JMethod> entries) {
+        startIncrementalRun();
+        Context defContext = contextSelector.getEmptyContext();
+        for (JMethod entry : entries) {
+            CSMethod csMethod = csManager.getCSMethod(defContext, entry);
+            callGraph.addEntryMethod(csMethod);
+            addReachable(csMethod);
+        }
+        return finishIncrementalRun();
+    }
+
+    /**
+     * Adds classes loaded after the analysis was solved, e.g., by reflection
+     * or a plugin. Their methods become reachable as usual, through the calls
+     * and allocations of reachable code, so only their static initializers
+     * are added as new entries. See {@link #addEntryMethods} for the result.
+     *
+     * @return the result of the updated analysis.
+     */
+    public PointerAnalysisResult addClasses(Collection<JClass> classes) {
+        return addEntryMethods(classes.stream()
+                .map(JClass::getClinit)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    /**
+     * @return true if result was returned before an incremental run
+     * of the solver and is out of date.
+     */
+    public static boolean isStale(PointerAnalysisResult result) {
+        return result.hasResult(STALE_KEY);
+    }
+
+    private void startIncrementalRun() {
+        if(callGraph == null) {
+            throw new IllegalStateException("solve() must be called before an incremental run");
+        }
+        // budgets and the metrics report are per run, as if the run was a new analysis
+        metrics = new SolverMetrics(logger, "cs");
+        resetBudgets();
+    }
+
+    private PointerAnalysisResult finishIncrementalRun() {
+        analyze();
+        // the result views are built from the solved state on demand
+        if(result != null) {
+            result.storeResult(STALE_KEY, Boolean.TRUE);
+            result = null;
+        }
+        writeSnapshot();
+        return getResult();
+    }
+
+    /**
+     * Writes the points-to result to the file given by option "pta-snapshot",
+     * so that downstream analyses can read it without re-running the analysis.
+     * The snapshot is context-insensitive, the sets of heap pointers are
+     * merged over the heap contexts of their objects.
+     */
+    private void writeSnapshot() {
+        String snapshot = options.getString("pta-snapshot");
+        if(snapshot != null) {
+            PointerAnalysisResult result = getResult();
+            PointsToSnapshot.Heap heap = new PointsToSnapshot.Heap();
+            result.getStaticFields().forEach(field -> heap.addStaticField(
+                    field.getField(), objectsOf(field.getPointsToSet())));
+            result.getInstanceFields().forEach(field -> heap.addInstanceField(
+                    field.getBase().getObject(), field.getField(),
+                    objectsOf(field.getPointsToSet())));
+            result.getArrayIndexes().forEach(index -> heap.addArrayIndex(
+                    index.getArray().getObject(), objectsOf(index.getPointsToSet())));
+            PointsToSnapshot.write(Paths.get(snapshot), result.getVars(),
+                    result::getPointsToSet, heap, result.getCallGraph());
+        }
+    }
+
+    private static List<Obj> objectsOf(PointsToSet pts) {
+        return pts.objects().map(CSObj::getObject).toList();
     }
 
     private void initialize() {
         csManager = new MapBasedCSManager();
         callGraph = new CSCallGraph(csManager);
         pointerFlowGraph = new PointerFlowGraph();
-        workList = new WorkList();
+        metrics = new SolverMetrics(logger, "cs");
+        resetBudgets();
+        workList = new CoalescingWorkList(
+                CoalescingWorkList.Order.of(options.getString("worklist-order")),
+                pointerFlowGraph::getSuccsOf);
+        varSubstitution = new VarSubstitution();
+        typeFilter = new TypeFilter(World.get().getTypeSystem());
         // process program entry, i.e., main method
         Context defContext = contextSelector.getEmptyContext();
         JMethod main = World.get().getMainMethod();
@@ -114,11 +305,20 @@ class Solver {
      */
     private void addReachable(CSMethod csMethod) {
         if(!callGraph.contains(csMethod)) {
+            long reachableStart = System.nanoTime();
             callGraph.addReachableMethod(csMethod);
+            varSubstitution.addMethod(csMethod.getMethod());
             csMethod.getMethod().getIR().forEach(stmt -> {
                 StmtProcessor stmtProcessor = new StmtProcessor(csMethod);
+                long outerNanos = nestedReachableNanos;
+                nestedReachableNanos = 0;
+                long start = System.nanoTime();
                 stmt.accept(stmtProcessor);
+                // the statements of the callees are timed on their own
+                metrics.onStmt(stmt.getClass(), System.nanoTime() - start - nestedReachableNanos);
+                nestedReachableNanos = outerNanos;
             });
+            nestedReachableNanos += System.nanoTime() - reachableStart;
         }
     }
 
@@ -139,21 +339,28 @@ class Solver {
         @Override
         public Void visit(New stmt) {
             Obj obj = heapModel.getObj(stmt);
-            Context heapContext = contextSelector.selectHeapContext(csMethod, obj);
-            workList.addEntry(csManager.getCSVar(context, stmt.getLValue()), PointsToSetFactory.make(csManager.getCSObj(heapContext, obj)));
+            Context heapContext = selectHeapContext(csMethod, obj);
+            workList.addEntry(csVarOf(context, stmt.getLValue()), PointsToSetFactory.make(csManager.getCSObj(heapContext, obj)));
             return null;
         }
 
         @Override
         public Void visit(Copy stmt) {
-            addPFGEdge(csManager.getCSVar(context, stmt.getRValue()), csManager.getCSVar(context, stmt.getLValue()));
+            addPFGEdge(csVarOf(context, stmt.getRValue()), csVarOf(context, stmt.getLValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Cast stmt) {
+            // the objects are filtered by the type of lValue in propagate()
+            addPFGEdge(csVarOf(context, stmt.getRValue().getValue()), csVarOf(context, stmt.getLValue()));
             return null;
         }
 
         @Override
         public Void visit(LoadField stmt) {
             if(stmt.isStatic()) {
-                addPFGEdge(csManager.getStaticField(stmt.getFieldRef().resolve()),  csManager.getCSVar(context, stmt.getLValue()));
+                addPFGEdge(csManager.getStaticField(stmt.getFieldRef().resolve()),  csVarOf(context, stmt.getLValue()));
             }
             return null;
         }
@@ -161,7 +368,7 @@ class Solver {
         @Override
         public Void visit(StoreField stmt) {
             if(stmt.isStatic()) {
-                addPFGEdge(csManager.getCSVar(context, stmt.getRValue()), csManager.getStaticField(stmt.getFieldRef().resolve()));
+                addPFGEdge(csVarOf(context, stmt.getRValue()), csManager.getStaticField(stmt.getFieldRef().resolve()));
             }
             return null;
         }
@@ -171,7 +378,7 @@ class Solver {
             if(stmt.isStatic()) {
                 JMethod jMethod = resolveCallee(null, stmt);
                 CSCallSite csCallSite = csManager.getCSCallSite(context, stmt);
-                Context ct = contextSelector.selectContext(csCallSite, jMethod);
+                Context ct = selectContext(csCallSite, jMethod);
 
                 CSMethod csMethod = csManager.getCSMethod(ct, jMethod);
 
@@ -182,14 +389,14 @@ class Solver {
                     List<Var> args = stmt.getInvokeExp().getArgs();
                     List<Var> params = jMethod.getIR().getParams();
                     for (int i=0; i<args.size(); i++) {
-                        addPFGEdge(csManager.getCSVar(context, args.get(i)), csManager.getCSVar(ct, params.get(i)));
+                        addPFGEdge(csVarOf(context, args.get(i)), csVarOf(ct, params.get(i)));
                     }
 
                     List<Var> returnVars = jMethod.getIR().getReturnVars();
                     Var lValue = stmt.getLValue();
                     if(lValue != null) {
                         for (Var returnVar : returnVars) {
-                            addPFGEdge(csManager.getCSVar(ct, returnVar), csManager.getCSVar(context, lValue));
+                            addPFGEdge(csVarOf(ct, returnVar), csVarOf(context, lValue));
                         }
                     }
                 }
@@ -203,34 +410,181 @@ class Solver {
      * Adds an edge "source -> target" to the PFG.
      */
     private void addPFGEdge(Pointer source, Pointer target) {
-        if(!pointerFlowGraph.getSuccsOf(source).contains(target)) {
+        if(source != target && !pointerFlowGraph.getSuccsOf(source).contains(target)) {
             pointerFlowGraph.addEdge(source, target);
+            metrics.onNewEdge();
             if(!source.getPointsToSet().isEmpty()) {
                 workList.addEntry(target, source.getPointsToSet());
             }
         }
     }
 
+    /**
+     * Starts the budgets of a run, the deadline is counted from now.
+     */
+    private void resetBudgets() {
+        timeBudget = budgetOption("time-budget", 1_000_000_000L);
+        deadline = timeBudget == Long.MAX_VALUE ?
+                Long.MAX_VALUE : System.nanoTime() + timeBudget;
+        heapBudget = budgetOption("heap-budget", 1024L * 1024L);
+        polls = 0;
+        ciMethods = new HashSet<>();
+        allCI = false;
+        graceEnd = 0;
+    }
+
+    private long budgetOption(String key, long unit) {
+        return options.get(key) instanceof Number budget && budget.longValue() > 0 ?
+                budget.longValue() * unit : Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks the time and heap budgets. When a budget is exceeded, the methods
+     * analyzed in the most contexts are switched to context-insensitive
+     * handling, and all methods are if it is still exceeded after a grace
+     * period. Choosing contexts never affects soundness, but it only applies
+     * to the contexts created from then on, the existing contexts and their
+     * points-to sets are kept, so a switch slows down the growth of the
+     * analysis rather than shrinking it.
+     * <p>
+     * The time budget only triggers the switches, and the degraded analysis
+     * runs to its end with a sound but less precise result. The heap budget
+     * is a hard limit: if it is still exceeded after all methods are switched
+     * and another grace period, the analysis fails with an
+     * {@link AnalysisException} instead of running out of memory.
+     */
+    private void checkBudgets() {
+        if(++polls % POLLS_PER_BUDGET_CHECK != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if(now < graceEnd) {
+            return;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        boolean overHeap = usedHeap >= heapBudget;
+        if(now < deadline && !overHeap) {
+            return;
+        }
+        if(graceEnd == 0) {
+            Map<JMethod, Long> contextCounts = callGraph.reachableMethods()
+                    .collect(Collectors.groupingBy(CSMethod::getMethod, Collectors.counting()));
+            contextCounts.entrySet()
+                    .stream()
+                    .filter(e -> e.getValue() > 1)
+                    .sorted(Map.Entry.<JMethod, Long>comparingByValue().reversed())
+                    .limit(Math.max(1, contextCounts.size() / 10))
+                    .forEach(e -> ciMethods.add(e.getKey()));
+            allCI = ciMethods.isEmpty();
+            logger.warn("Budget exceeded (used heap {} MB), analyzing {} methods context-insensitively",
+                    usedHeap / (1024 * 1024), allCI ? "all" : ciMethods.size());
+        } else if(!allCI) {
+            allCI = true;
+            logger.warn("Budget still exceeded, analyzing all methods context-insensitively");
+        } else if(overHeap) {
+            throw new AnalysisException(String.format(
+                    "Pointer analysis exceeded its heap budget (used heap %d MB of %d MB)"
+                            + " even after switching all methods to context-insensitive handling",
+                    usedHeap / (1024 * 1024), heapBudget / (1024 * 1024)));
+        } else {
+            // only the time budget is exceeded, the degraded analysis finishes
+            return;
+        }
+        graceEnd = now + (timeBudget == Long.MAX_VALUE ? 10_000_000_000L : timeBudget / 4);
+    }
+
+    private Context selectContext(CSCallSite csCallSite, JMethod callee) {
+        return isCI(callee) ? contextSelector.getEmptyContext() :
+                contextSelector.selectContext(csCallSite, callee);
+    }
+
+    private Context selectContext(CSCallSite csCallSite, CSObj recv, JMethod callee) {
+        return isCI(callee) ? contextSelector.getEmptyContext() :
+                contextSelector.selectContext(csCallSite, recv, callee);
+    }
+
+    private Context selectHeapContext(CSMethod method, Obj obj) {
+        return isCI(method.getMethod()) ? contextSelector.getEmptyContext() :
+                contextSelector.selectHeapContext(method, obj);
+    }
+
+    private boolean isCI(JMethod method) {
+        return allCI || ciMethods.contains(method);
+    }
+
     /**
      * Processes work-list entries until the work-list is empty.
      */
     private void analyze() {
         while(!workList.isEmpty()) {
-            WorkList.Entry entry = workList.pollEntry();
+            metrics.onPoll(workList.size());
+            checkBudgets();
+            CoalescingWorkList.Entry entry = workList.pollEntry();
             PointsToSet delta = propagate(entry.pointer(), entry.pointsToSet());
+            metrics.onPropagate(delta.size());
 
             if(entry.pointer() instanceof CSVar varPtr) {
+                List<Var> vars = varSubstitution.varsOf(varPtr.getVar());
                 delta.forEach(obj -> {
-                    Var var = varPtr.getVar();
-                    var.getLoadFields().forEach(loadField -> addPFGEdge(csManager.getInstanceField(obj, loadField.getFieldRef().resolve()), csManager.getCSVar(varPtr.getContext(), loadField.getLValue())));
-                    var.getStoreFields().forEach(storeField -> addPFGEdge(csManager.getCSVar(varPtr.getContext(), storeField.getRValue()), csManager.getInstanceField(obj, storeField.getFieldRef().resolve())));
-                    var.getLoadArrays().forEach(loadArray -> addPFGEdge(csManager.getArrayIndex(obj), csManager.getCSVar(varPtr.getContext(), loadArray.getLValue())));
-                    var.getStoreArrays().forEach(storeArray -> addPFGEdge(csManager.getCSVar(varPtr.getContext(), storeArray.getRValue()), csManager.getArrayIndex(obj)));
-                    processCall(varPtr, obj);
+                    for (Var var : vars) {
+                        var.getLoadFields().forEach(loadField -> addPFGEdge(csManager.getInstanceField(obj, loadField.getFieldRef().resolve()), csVarOf(varPtr.getContext(), loadField.getLValue())));
+                        var.getStoreFields().forEach(storeField -> addPFGEdge(csVarOf(varPtr.getContext(), storeField.getRValue()), csManager.getInstanceField(obj, storeField.getFieldRef().resolve())));
+                        var.getLoadArrays().forEach(loadArray -> addPFGEdge(csManager.getArrayIndex(obj), csVarOf(varPtr.getContext(), loadArray.getLValue())));
+                        var.getStoreArrays().forEach(storeArray -> addPFGEdge(csVarOf(varPtr.getContext(), storeArray.getRValue()), csManager.getArrayIndex(obj)));
+                        processCall(varPtr, var, obj);
+                    }
                 });
             }
         }
-        System.out.println('s');
+        syncSubstitutedVars();
+        finishMetrics();
+    }
+
+    /**
+     * Logs the metrics of this run, and writes the JSON report to
+     * the file given by option "metrics-report" if it is set.
+     */
+    private void finishMetrics() {
+        metrics.put("reachableMethods", callGraph.reachableMethods().count());
+        metrics.put("contexts", callGraph.reachableMethods()
+                .map(CSMethod::getContext)
+                .distinct()
+                .count());
+        metrics.put("csVars", csManager.getCSVars().size());
+        IntStream ptsSizes = csManager.getCSVars()
+                .stream()
+                .mapToInt(csVar -> csVar.getPointsToSet().size());
+        String reportPath = options.getString("metrics-report");
+        if(reportPath != null) {
+            metrics.finish(ptsSizes, Paths.get(reportPath));
+        } else {
+            metrics.finish(ptsSizes);
+        }
+    }
+
+    /**
+     * Fills in the points-to sets of the variables substituted by
+     * their representatives before solving, in every reachable context.
+     */
+    private void syncSubstitutedVars() {
+        callGraph.reachableMethods().forEach(csMethod -> {
+            Context context = csMethod.getContext();
+            csMethod.getMethod().getIR().getVars().forEach(var -> {
+                if(varSubstitution.isSubstituted(var)) {
+                    PointsToSet pts = csManager.getCSVar(context, var).getPointsToSet();
+                    csVarOf(context, var).getPointsToSet().objects().forEach(pts::addObject);
+                }
+            });
+        });
+    }
+
+    /**
+     * @return the context-sensitive variable, or the one of its representative
+     * if the variable is substituted.
+     */
+    private CSVar csVarOf(Context context, Var var) {
+        return csManager.getCSVar(context, varSubstitution.repOf(var));
     }
 
     /**
@@ -240,11 +594,15 @@ class Solver {
     private PointsToSet propagate(Pointer pointer, PointsToSet pts) {
         PointsToSet delta = PointsToSetFactory.make();
         PointsToSet ptn = pointer.getPointsToSet();
+        Type type = pointer instanceof CSVar csVar ? csVar.getVar().getType() : null;
         if(!pts.isEmpty()) {
-            pts.objects().filter(obj -> !ptn.contains(obj)).forEach(obj -> {
-                ptn.addObject(obj);
-                delta.addObject(obj);
-            });
+            pts.objects()
+                    .filter(obj -> !ptn.contains(obj))
+                    .filter(obj -> type == null || typeFilter.isAssignable(type, obj.getObject().getType()))
+                    .forEach(obj -> {
+                        ptn.addObject(obj);
+                        delta.addObject(obj);
+                    });
         }
         if(!delta.isEmpty()) {
             pointerFlowGraph.getSuccsOf(pointer).forEach(succPointer -> workList.addEntry(succPointer, delta));
@@ -257,17 +615,18 @@ class Solver {
      * Processes instance calls when points-to set of the receiver variable changes.
      *
      * @param recv    the receiver variable
+     * @param var     the variable that holds receiver objects, i.e., the
+     *                variable of recv or one substituted by it
      * @param recvObj set of new discovered objects pointed by the variable.
      */
-    private void processCall(CSVar recv, CSObj recvObj) {
-        Var var = recv.getVar();
+    private void processCall(CSVar recv, Var var, CSObj recvObj) {
         Context c = recv.getContext();
         var.getInvokes().forEach(callSite -> {
             JMethod m = resolveCallee(recvObj, callSite);
             CSCallSite csCallSite = csManager.getCSCallSite(c, callSite);
-            Context ct = contextSelector.selectContext(csCallSite, recvObj, m);
+            Context ct = selectContext(csCallSite, recvObj, m);
             CSMethod csMethod = csManager.getCSMethod(ct, m);
-            workList.addEntry(csManager.getCSVar(ct, m.getIR().getThis()), PointsToSetFactory.make(recvObj));
+            workList.addEntry(csVarOf(ct, m.getIR().getThis()), PointsToSetFactory.make(recvObj));
             if(!callGraph.getCalleesOf(csCallSite).contains(csMethod)) {
                 callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(callSite), csCallSite, csMethod));
                 addReachable(csMethod);
@@ -277,14 +636,14 @@ class Solver {
 
                 List<Var> params = jMethod.getIR().getParams();
                 for (int i=0; i<args.size(); i++) {
-                    addPFGEdge(csManager.getCSVar(c, args.get(i)), csManager.getCSVar(ct, params.get(i)));
+                    addPFGEdge(csVarOf(c, args.get(i)), csVarOf(ct, params.get(i)));
                 }
 
                 List<Var> returnVars = jMethod.getIR().getReturnVars();
                 Var lValue = callSite.getLValue();
                 if(lValue != null) {
                     for (Var returnVar : returnVars) {
-                        addPFGEdge(csManager.getCSVar(ct, returnVar), csManager.getCSVar(c, lValue));
+                        addPFGEdge(csVarOf(ct, returnVar), csVarOf(c, lValue));
                     }
                 }
             }
@@ -307,7 +666,357 @@ class Solver {
     PointerAnalysisResult getResult() {
         if (result == null) {
             result = new PointerAnalysisResultImpl(csManager, callGraph);
+            result.storeResult(RESULT_KEY, this);
         }
         return result;
     }
 }
+
+/**
+ * Offline variable substitution: finds the variables that are pointer
+ * equivalent to another variable before solving, i.e., the temporaries
+ * whose only definition is a copy, and maps copy chains of them
+ * to the variable at the head of the chain.
+ */
+class VarSubstitution {
+
+    private final Set<JMethod> methods = new HashSet<>();
+
+    /**
+     * Substituted variable -> its representative.
+     */
+    private final Map<Var, Var> reps = new HashMap<>();
+
+    /**
+     * Representative -> the variables substituted by it.
+     */
+    private final Map<Var, List<Var>> substitutes = new HashMap<>();
+
+    /**
+     * Finds the substitutable variables of given method, once per method.
+     */
+    void addMethod(JMethod method) {
+        if (!methods.add(method)) {
+            return;
+        }
+        IR ir = method.getIR();
+        Map<Var, Integer> defCounts = new HashMap<>();
+        Map<Var, Var> copySources = new HashMap<>();
+        for (Stmt stmt : ir) {
+            stmt.getDef().ifPresent(def -> {
+                if (def instanceof Var var) {
+                    defCounts.merge(var, 1, Integer::sum);
+                }
+            });
+            if (stmt instanceof Copy copy) {
+                copySources.put(copy.getLValue(), copy.getRValue());
+            }
+        }
+        // parameters and this are also defined by the calls
+        Set<Var> implicitDefs = new HashSet<>(ir.getParams());
+        if (ir.getThis() != null) {
+            implicitDefs.add(ir.getThis());
+        }
+        copySources.keySet().removeIf(var ->
+                defCounts.get(var) != 1 || implicitDefs.contains(var));
+        copySources.keySet().forEach(var -> {
+            Var rep = var;
+            Set<Var> visited = new HashSet<>();
+            while (copySources.containsKey(rep) && visited.add(rep)) {
+                rep = copySources.get(rep);
+            }
+            if (rep != var) {
+                reps.put(var, rep);
+                substitutes.computeIfAbsent(rep, r -> new ArrayList<>()).add(var);
+            }
+        });
+    }
+
+    Var repOf(Var var) {
+        return reps.getOrDefault(var, var);
+    }
+
+    /**
+     * @return the representative and all variables substituted by it.
+     */
+    List<Var> varsOf(Var rep) {
+        List<Var> vars = substitutes.get(rep);
+        if (vars == null) {
+            return List.of(rep);
+        }
+        List<Var> result = new ArrayList<>(vars.size() + 1);
+        result.add(rep);
+        result.addAll(vars);
+        return result;
+    }
+
+    boolean isSubstituted(Var var) {
+        return reps.containsKey(var);
+    }
+
+    Set<Var> getSubstitutedVars() {
+        return reps.keySet();
+    }
+}
+
+/**
+ * Work-list which keeps one pending points-to set per pointer, so the
+ * entries added for a pointer before it is polled are propagated at once.
+ * The order in which pending pointers are polled is pluggable.
+ */
+class CoalescingWorkList {
+
+    record Entry(Pointer pointer, PointsToSet pointsToSet) {
+    }
+
+    /**
+     * Orders of polling the pending pointers.
+     */
+    enum Order {
+        /**
+         * First added, first polled.
+         */
+        FIFO,
+        /**
+         * Upstream pointers first, by topological order of the condensation
+         * of the PFG, which is recomputed as the PFG grows.
+         */
+        TOPO,
+        /**
+         * The pointer polled least recently first.
+         */
+        LRF,
+        /**
+         * The pointers pending at the start of a wave are polled in
+         * topological order, pointers added after them wait for the next wave.
+         * The ranks are recomputed as for TOPO, the pointers not ranked yet
+         * are polled last.
+         */
+        WAVE;
+
+        static Order of(String name) {
+            if (name == null) {
+                return FIFO;
+            }
+            for (Order order : values()) {
+                if (order.name().equalsIgnoreCase(name)) {
+                    return order;
+                }
+            }
+            throw new AnalysisException("Unknown worklist-order '" + name
+                    + "', expected one of " + Arrays.toString(values()));
+        }
+    }
+
+    private final Order order;
+
+    private final Function<Pointer, ? extends Collection<Pointer>> succs;
+
+    /**
+     * Pointer -> union of its pending points-to sets.
+     */
+    private final Map<Pointer, PointsToSet> pending = new HashMap<>();
+
+    private final Queue<Pointer> queue;
+
+    private final Map<Pointer, Long> addedAt = new HashMap<>();
+
+    private final Map<Pointer, Long> firedAt = new HashMap<>();
+
+    private long clock;
+
+    private Map<Pointer, Integer> ranks = Map.of();
+
+    private int pollsSinceRanking;
+
+    /**
+     * @param order the order of polling pointers
+     * @param succs the PFG successors of a pointer, used by topological orders
+     */
+    CoalescingWorkList(Order order,
+                       Function<Pointer, ? extends Collection<Pointer>> succs) {
+        this.order = order;
+        this.succs = succs;
+        this.queue = switch (order) {
+            case FIFO, WAVE -> new ArrayDeque<>();
+            case TOPO -> new PriorityQueue<>(
+                    Comparator.comparingInt(this::rankOf)
+                            .thenComparingLong(addedAt::get));
+            case LRF -> new PriorityQueue<>(
+                    Comparator.comparingLong((Pointer p) -> firedAt.getOrDefault(p, -1L))
+                            .thenComparingLong(addedAt::get));
+        };
+    }
+
+    void addEntry(Pointer pointer, PointsToSet pointsToSet) {
+        PointsToSet pts = pending.get(pointer);
+        if (pts == null) {
+            // always union into a set of our own, pointsToSet may be shared
+            pts = PointsToSetFactory.make();
+            pending.put(pointer, pts);
+            addedAt.put(pointer, clock++);
+            if (order != Order.WAVE) {
+                queue.add(pointer);
+            }
+        }
+        pts.addAll(pointsToSet);
+    }
+
+    Entry pollEntry() {
+        if (order == Order.WAVE) {
+            ++pollsSinceRanking;
+            if (queue.isEmpty()) {
+                startWave();
+            }
+        } else if (order == Order.TOPO && ++pollsSinceRanking > ranks.size()) {
+            rerank();
+            List<Pointer> pointers = new ArrayList<>(queue);
+            queue.clear();
+            queue.addAll(pointers);
+        }
+        Pointer pointer = queue.poll();
+        addedAt.remove(pointer);
+        if (order == Order.LRF) {
+            firedAt.put(pointer, clock++);
+        }
+        return new Entry(pointer, pending.remove(pointer));
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private void startWave() {
+        if (pollsSinceRanking > ranks.size()) {
+            rerank();
+        }
+        pending.keySet()
+                .stream()
+                .sorted(Comparator.comparingInt(this::rankOf)
+                        .thenComparingLong(addedAt::get))
+                .forEach(queue::add);
+    }
+
+    /**
+     * Re-ranks the pending pointers, once per |ranked pointers| polls,
+     * so the cost of ranking is amortized linear.
+     */
+    private void rerank() {
+        ranks = computeRanks(pending.keySet());
+        pollsSinceRanking = 0;
+    }
+
+    private int rankOf(Pointer pointer) {
+        return ranks.getOrDefault(pointer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Ranks the pointers reachable from roots in the PFG, so that
+     * a pointer ranks before all pointers in the SCCs reachable from it.
+     */
+    private Map<Pointer, Integer> computeRanks(Collection<Pointer> roots) {
+        List<List<Pointer>> sccs = SCCFinder.find(List.copyOf(roots), succs);
+        Map<Pointer, Integer> result = new HashMap<>();
+        for (int i = 0; i < sccs.size(); ++i) {
+            int rank = sccs.size() - 1 - i;
+            sccs.get(i).forEach(p -> result.put(p, rank));
+        }
+        return result;
+    }
+}
+
+/**
+ * Iterative Tarjan's algorithm for strongly connected components.
+ */
+final class SCCFinder {
+
+    private SCCFinder() {
+    }
+
+    /**
+     * Finds the SCCs reachable from given roots.
+     *
+     * @return the SCCs in reverse topological order, i.e., every SCC comes
+     * after all SCCs reachable from it.
+     */
+    static <N> List<List<N>> find(Iterable<N> roots, Function<N, ? extends Collection<N>> succs) {
+        Map<N, Integer> index = new HashMap<>();
+        Map<N, Integer> lowLink = new HashMap<>();
+        Deque<N> stack = new ArrayDeque<>();
+        Set<N> onStack = new HashSet<>();
+        Deque<Map.Entry<N, Iterator<N>>> callStack = new ArrayDeque<>();
+        List<List<N>> sccs = new ArrayList<>();
+        for (N root : roots) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            callStack.push(Map.entry(root, succs.apply(root).iterator()));
+            while (!callStack.isEmpty()) {
+                N node = callStack.peek().getKey();
+                Iterator<N> it = callStack.peek().getValue();
+                if (it.hasNext()) {
+                    N succ = it.next();
+                    if (!index.containsKey(succ)) {
+                        index.put(succ, index.size());
+                        lowLink.put(succ, index.get(succ));
+                        stack.push(succ);
+                        onStack.add(succ);
+                        callStack.push(Map.entry(succ, succs.apply(succ).iterator()));
+                    } else if (onStack.contains(succ)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(succ)));
+                    }
+                } else {
+                    callStack.pop();
+                    if (!callStack.isEmpty()) {
+                        N parent = callStack.peek().getKey();
+                        lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                    }
+                    if (lowLink.get(node).equals(index.get(node))) {
+                        List<N> scc = new ArrayList<>();
+                        N member;
+                        do {
+                            member = stack.pop();
+                            onStack.remove(member);
+                            scc.add(member);
+                        } while (!member.equals(node));
+                        sccs.add(scc);
+                    }
+                }
+            }
+        }
+        return sccs;
+    }
+}
+
+/**
+ * Decides whether objects may flow to a variable by its declared type.
+ * Results are cached by (declared type, object type), as there are
+ * far fewer types than objects.
+ */
+class TypeFilter {
+
+    private final TypeSystem typeSystem;
+
+    private final Map<Type, Map<Type, Boolean>> assignable = new ConcurrentHashMap<>();
+
+    TypeFilter(TypeSystem typeSystem) {
+        this.typeSystem = typeSystem;
+    }
+
+    boolean isAssignable(Type declaredType, Type objType) {
+        return assignable.computeIfAbsent(declaredType, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(objType, t -> {
+                    synchronized (typeSystem) {
+                        return typeSystem.isSubtype(declaredType, t);
+                    }
+                });
+    }
+}
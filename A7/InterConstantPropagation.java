@@ -28,10 +28,12 @@ import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
 import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
 import pascal.taie.analysis.dataflow.analysis.constprop.Value;
 import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.dataflow.fact.MapFact;
 import pascal.taie.analysis.graph.cfg.CFG;
 import pascal.taie.analysis.graph.cfg.CFGBuilder;
 import pascal.taie.analysis.graph.icfg.CallEdge;
 import pascal.taie.analysis.graph.icfg.CallToReturnEdge;
+import pascal.taie.analysis.graph.icfg.ICFGEdge;
 import pascal.taie.analysis.graph.icfg.NormalEdge;
 import pascal.taie.analysis.graph.icfg.ReturnEdge;
 import pascal.taie.analysis.pta.PointerAnalysisResult;
@@ -46,8 +48,12 @@ import pascal.taie.language.classes.JField;
 import pascal.taie.language.classes.JMethod;
 import soot.util.Cons;
 
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of interprocedural constant propagation for int values.
@@ -59,9 +65,58 @@ public class InterConstantPropagation extends
 
     private final ConstantPropagation cp;
 
-    private Map<Var, HashSet<Var>> allVarAliases;
+    private PointerAnalysisResult pta;
 
-    private Map<JField, HashSet<StoreField>>  staticFieldStore;
+    /**
+     * Points-to equivalence classes, variables with identical points-to
+     * sets share one class, i.e., the first of their points-to sets.
+     * The sets are not copied: the pointer analysis is finished, so they
+     * no longer change and can serve as hash keys as they are.
+     */
+    private Map<Var, Integer> varClasses;
+
+    private List<Set<Obj>> classObjs;
+
+    private record FieldKey(Obj obj, JField field) {
+    }
+
+    /**
+     * Array cell key, index is null for stores with NAC index.
+     */
+    private record ArrayKey(Obj obj, Integer index) {
+    }
+
+    /**
+     * Instance field loads indexed by (abstract object, field).
+     */
+    private Map<FieldKey, Set<LoadField>> fieldLoads;
+
+    /**
+     * Abstract heap, i.e., meet of the values stored to each field cell,
+     * object of static fields is null. A cell is keyed like the load index
+     * above, so it also replaces the per-(object, field) store index: a load
+     * reads the cells of its objects instead of visiting the matching stores.
+     */
+    private Map<FieldKey, Value> fieldCells;
+
+    /**
+     * Meet of the values stored to each array object per index class.
+     */
+    private Map<ArrayKey, Value> arrayCells;
+
+    /**
+     * Meet of all values stored to each array object, read by loads with NAC index.
+     */
+    private Map<Obj, Value> arrayAllCells;
+
+    /**
+     * Array loads bucketed per array object by the constant index they read,
+     * bucket null holds the loads with NAC index. Stores wake loads through
+     * these buckets and the field load index, keyed by object, so no alias
+     * sets of base variables (nor the inverted object -> variables index
+     * they were derived from) are needed anymore.
+     */
+    private Map<Obj, Map<Integer, Set<LoadArray>>> arrayLoads;
 
     private Map<JField, HashSet<LoadField>>  staticFieldLoad;
 
@@ -70,43 +125,130 @@ public class InterConstantPropagation extends
         cp = new ConstantPropagation(new AnalysisConfig(ConstantPropagation.ID));
     }
 
+    /**
+     * Updates the result of the last {@link #analyze()} after nodes and edges
+     * are added to the ICFG in place, e.g., when more classes are loaded or
+     * entry methods are added. Only the nodes affected by the additions are
+     * re-analyzed, see {@link InterSolver#update}.
+     *
+     * @param addedNodes nodes added to the ICFG since the last analyze/update
+     * @param addedEdges edges added to the ICFG since the last analyze/update
+     * @return the updated result
+     */
+    public DataflowResult<Stmt, CPFact> update(Collection<Stmt> addedNodes,
+                                               Collection<ICFGEdge<Stmt>> addedEdges) {
+        if (solver == null) {
+            throw new IllegalStateException(
+                    "update() needs the result of the default work-list solver");
+        }
+        // the instance field and array indexes come from the pointer analysis
+        // result, which is not changed by the update
+        addedNodes.forEach(this::indexStaticFieldAccess);
+        return solver.update(addedNodes, addedEdges);
+    }
+
     @Override
     protected void initialize() {
-        String ptaId = getOptions().getString("pta");
-        PointerAnalysisResult pta = World.get().getResult(ptaId);
-
-        allVarAliases = new HashMap<>();
-
-        for (Var base : pta.getVars()) {
-            for(Var var : pta.getVars()) {
-                for (Obj obj : pta.getPointsToSet(base)) {
-                    if (pta.getPointsToSet(var).contains(obj)) {
-                        HashSet<Var> baseAliases = allVarAliases.getOrDefault(base, new HashSet<>());
-                        baseAliases.add(var);
-                        allVarAliases.put(base, baseAliases);
-                        break;
-                    }
+        // a points-to snapshot, if given, saves re-running the pointer analysis
+        String snapshot = getOptions().getString("pta-snapshot");
+        if (snapshot != null) {
+            pta = PointsToSnapshot.open(Paths.get(snapshot));
+        } else {
+            String ptaId = getOptions().getString("pta");
+            pta = World.get().getResult(ptaId);
+        }
+
+        fieldLoads = new HashMap<>();
+        fieldCells = new HashMap<>();
+        arrayCells = new HashMap<>();
+        arrayAllCells = new HashMap<>();
+        arrayLoads = new HashMap<>();
+        varClasses = new HashMap<>();
+        classObjs = new ArrayList<>();
+        Map<Set<Obj>, Integer> classIds = new HashMap<>();
+        for (Var var : pta.getVars()) {
+            Set<Obj> pts = pta.getPointsToSet(var);
+            if (pts.isEmpty()) {
+                continue;
+            }
+            int classId = classIds.computeIfAbsent(pts, p -> {
+                classObjs.add(p);
+                return classObjs.size() - 1;
+            });
+            varClasses.put(var, classId);
+            for (Obj obj : classObjs.get(classId)) {
+                for (StoreField storeField : var.getStoreFields()) {
+                    fieldCells.put(new FieldKey(obj, storeField.getFieldRef().resolve()), Value.getUndef());
+                }
+                for (LoadField loadField : var.getLoadFields()) {
+                    fieldLoads.computeIfAbsent(new FieldKey(obj, loadField.getFieldRef().resolve()),
+                            k -> new HashSet<>()).add(loadField);
                 }
             }
         }
 
-        staticFieldStore = new HashMap<>();
         staticFieldLoad = new HashMap<>();
-        icfg.forEach(stmt -> {
-            if(stmt instanceof StoreField storeField && storeField.isStatic()) {
-                JField jField = storeField.getFieldRef().resolve();
-                HashSet<StoreField> storeFields = staticFieldStore.getOrDefault(jField, new HashSet<>());
-                storeFields.add(storeField);
-                staticFieldStore.put(jField, storeFields);
-            }
-            if(stmt instanceof LoadField loadField && loadField.isStatic()) {
-                JField jField = loadField.getFieldRef().resolve();
-                HashSet<LoadField> loadFields = staticFieldLoad.getOrDefault(jField, new HashSet<>());
-                loadFields.add(loadField);
-                staticFieldLoad.put(jField, loadFields);
-            }
-        });
+        icfg.forEach(this::indexStaticFieldAccess);
+
+    }
+
+    private void indexStaticFieldAccess(Stmt stmt) {
+        if(stmt instanceof StoreField storeField && storeField.isStatic()) {
+            fieldCells.putIfAbsent(new FieldKey(null, storeField.getFieldRef().resolve()), Value.getUndef());
+        }
+        if(stmt instanceof LoadField loadField && loadField.isStatic()) {
+            JField jField = loadField.getFieldRef().resolve();
+            HashSet<LoadField> loadFields = staticFieldLoad.getOrDefault(jField, new HashSet<>());
+            loadFields.add(loadField);
+            staticFieldLoad.put(jField, loadFields);
+        }
+    }
+
+    /**
+     * @return the shared points-to set of the equivalence class of var.
+     */
+    private Set<Obj> pointsTo(Var var) {
+        Integer classId = varClasses.get(var);
+        return classId == null ? Set.of() : classObjs.get(classId);
+    }
+
+    /**
+     * Meets value into the cell of key.
+     *
+     * @return true if the cell changes.
+     */
+    private <K> boolean updateCell(Map<K, Value> cells, K key, Value value) {
+        Value old = cells.get(key);
+        Value meet = cp.meetValue(old, value);
+        if (meet.equals(old)) {
+            return false;
+        }
+        cells.put(key, meet);
+        return true;
+    }
+
+    /**
+     * Meets the value of a cell into acc, absent cells (no stores) are ignored.
+     */
+    private Value meetCell(Value acc, Value cell) {
+        return cell == null ? acc : cp.meetValue(acc, cell);
+    }
+
+    /**
+     * Transfer function of loads, lVar gets resValue which is the meet of
+     * the cells it may read, or keeps its IN value if there is no such cell.
+     */
+    private boolean transferLoad(Var lVar, Value resValue, CPFact in, CPFact out) {
+        CPFact gen = new CPFact();
+        CPFact inTmp = in.copy();
+
+        if(resValue != null) {
+            gen.update(lVar, resValue);
+            inTmp.remove(lVar);
+        }
 
+        boolean isChange = out.copyFrom(gen);
+        return out.copyFrom(inTmp) || isChange;
     }
 
     @Override
@@ -125,9 +267,17 @@ public class InterConstantPropagation extends
         return cp.newInitialFact();
     }
 
+    /**
+     * Meets fact into target entry by entry, so the facts returned by the
+     * edge transfer functions, which may be the OUT fact of the source node
+     * itself, are only read and never copied.
+     */
     @Override
     public void meetInto(CPFact fact, CPFact target) {
-        cp.meetInto(fact, target);
+        fact.entries().forEach(entry -> {
+            Var var = entry.getKey();
+            target.update(var, cp.meetValue(entry.getValue(), target.get(var)));
+        });
     }
 
     @Override
@@ -138,101 +288,55 @@ public class InterConstantPropagation extends
     @Override
     protected boolean transferNonCallNode(Stmt stmt, CPFact in, CPFact out) {
         if(stmt instanceof LoadField loadField && ConstantPropagation.canHoldInt(loadField.getLValue())) {
-            Var lVar = loadField.getLValue();
+            JField field = loadField.getFieldRef().resolve();
+            Value resValue = null;
             if(loadField.isStatic()) {
-                JField resolve = loadField.getFieldRef().resolve();
-
-                CPFact gen = new CPFact();
-                CPFact inTmp = in.copy();
-
-                HashSet<StoreField> storeFields = staticFieldStore.getOrDefault(resolve, new HashSet<>());
-                DataflowResult<Stmt, CPFact> dataFlowResult = this.solver.getResult();
-                Value resValue = null;
-                for (StoreField storeField : storeFields) {
-                    resValue = cp.meetValue(resValue, dataFlowResult.getOutFact(storeField).get(storeField.getRValue()));
-                }
-
-                if(resValue != null) {
-                    gen.update(lVar, resValue);
-                    inTmp.remove(lVar);
-                }
-
-                boolean isChange = out.copyFrom(gen);
-                return out.copyFrom(inTmp) || isChange;
-
+                resValue = fieldCells.get(new FieldKey(null, field));
             } else {
-
-                CPFact gen = new CPFact();
-                CPFact inTmp = in.copy();
-
                 Var base = ((InstanceFieldAccess) loadField.getFieldAccess()).getBase();
-                JField loadFieldRef = loadField.getFieldRef().resolve();
-
-                Value resValue = null;
-                DataflowResult<Stmt, CPFact> dataFlowResult = this.solver.getResult();
-                for (Var var : allVarAliases.getOrDefault(base, new HashSet<>())) {
-                    for (StoreField storeField : var.getStoreFields()) {
-                        if(storeField.getFieldRef().resolve() == loadFieldRef) {
-                            resValue = cp.meetValue(resValue, dataFlowResult.getOutFact(storeField).get(storeField.getRValue()));
-                        }
-                    }
-                }
-
-                if(resValue != null) {
-                    gen.update(lVar, resValue);
-                    inTmp.remove(lVar);
+                for (Obj obj : pointsTo(base)) {
+                    resValue = meetCell(resValue, fieldCells.get(new FieldKey(obj, field)));
                 }
-
-                boolean isChange = out.copyFrom(gen);
-                return out.copyFrom(inTmp) || isChange;
-
             }
-        } else if(stmt instanceof LoadArray loadArray && ConstantPropagation.canHoldInt(loadArray.getLValue())) {
-
-            Var lVar = loadArray.getLValue();
-
-            CPFact gen = new CPFact();
-            CPFact inTmp = in.copy();
+            return transferLoad(loadField.getLValue(), resValue, in, out);
 
+        } else if(stmt instanceof LoadArray loadArray && ConstantPropagation.canHoldInt(loadArray.getLValue())) {
             Var base = loadArray.getArrayAccess().getBase();
             Value loadIndexValue = in.get(loadArray.getArrayAccess().getIndex());
 
             Value resValue = null;
-            DataflowResult<Stmt, CPFact> dataFlowResult = this.solver.getResult();
-
-            for(Var var : allVarAliases.getOrDefault(base, new HashSet<>())) {
-                for (StoreArray storeArray : var.getStoreArrays()) {
-                    Value storeIndexValue = dataFlowResult.getInFact(storeArray).get(storeArray.getArrayAccess().getIndex());
-                    if((loadIndexValue.isConstant() && storeIndexValue.isConstant() && storeIndexValue.getConstant() == loadIndexValue.getConstant()) || (loadIndexValue.isConstant() && storeIndexValue.isNAC()) || (loadIndexValue.isNAC() && storeIndexValue.isConstant()) || (loadIndexValue.isNAC() && storeIndexValue.isNAC()) ) {
-                        resValue = cp.meetValue(resValue, dataFlowResult.getOutFact(storeArray).get(storeArray.getRValue()));
+            if(!loadIndexValue.isUndef()) {
+                Integer index = loadIndexValue.isConstant() ? loadIndexValue.getConstant() : null;
+                for (Obj obj : pointsTo(base)) {
+                    arrayLoads.computeIfAbsent(obj, o -> new HashMap<>())
+                            .computeIfAbsent(index, i -> new HashSet<>()).add(loadArray);
+                    if(loadIndexValue.isConstant()) {
+                        resValue = meetCell(resValue, arrayCells.get(new ArrayKey(obj, loadIndexValue.getConstant())));
+                        resValue = meetCell(resValue, arrayCells.get(new ArrayKey(obj, null)));
+                    } else {
+                        resValue = meetCell(resValue, arrayAllCells.get(obj));
                     }
                 }
             }
-
-            if(resValue != null) {
-                gen.update(lVar, resValue);
-                inTmp.remove(lVar);
-            }
-
-            boolean isChange = out.copyFrom(gen);
-            return out.copyFrom(inTmp) || isChange;
+            return transferLoad(loadArray.getLValue(), resValue, in, out);
 
         } else if(stmt instanceof StoreField storeField) {
             boolean isChange = cp.transferNode(stmt, in, out);
+            Value value = out.get(storeField.getRValue());
+            JField field = storeField.getFieldRef().resolve();
             if(!storeField.isStatic()) {
-                if (isChange) {
-                    Var base = ((InstanceFieldAccess) storeField.getFieldAccess()).getBase();
-                    for (Var var : allVarAliases.getOrDefault(base, new HashSet<>())) {
-                        for (LoadField loadField : var.getLoadFields()) {
+                Var base = ((InstanceFieldAccess) storeField.getFieldAccess()).getBase();
+                for (Obj obj : pointsTo(base)) {
+                    FieldKey key = new FieldKey(obj, field);
+                    if (updateCell(fieldCells, key, value)) {
+                        for (LoadField loadField : fieldLoads.getOrDefault(key, Set.of())) {
                             this.solver.addWorkList(loadField);
                         }
                     }
                 }
             } else {
-                // 不重要
-                if (isChange) {
-                    HashSet<LoadField> loadFields = staticFieldLoad.getOrDefault(storeField.getFieldRef().resolve(), new HashSet<>());
-                    for (LoadField loadField : loadFields) {
+                if (updateCell(fieldCells, new FieldKey(null, field), value)) {
+                    for (LoadField loadField : staticFieldLoad.getOrDefault(field, new HashSet<>())) {
                         this.solver.addWorkList(loadField);
                     }
                 }
@@ -240,11 +344,23 @@ public class InterConstantPropagation extends
             return isChange;
         } else if(stmt instanceof StoreArray storeArray) {
             boolean isChange = cp.transferNode(stmt, in, out);
-            if(isChange) {
+            Value storeIndexValue = in.get(storeArray.getArrayAccess().getIndex());
+            if(!storeIndexValue.isUndef()) {
                 Var base = storeArray.getArrayAccess().getBase();
-                for (Var var : allVarAliases.getOrDefault(base, new HashSet<>())) {
-                    for (LoadArray loadArray : var.getLoadArrays()) {
-                        this.solver.addWorkList(loadArray);
+                Value value = out.get(storeArray.getRValue());
+                Integer index = storeIndexValue.isConstant() ? storeIndexValue.getConstant() : null;
+                for (Obj obj : pointsTo(base)) {
+                    boolean cellChange = updateCell(arrayCells, new ArrayKey(obj, index), value);
+                    cellChange |= updateCell(arrayAllCells, obj, value);
+                    if(cellChange) {
+                        Map<Integer, Set<LoadArray>> buckets = arrayLoads.getOrDefault(obj, Collections.emptyMap());
+                        if(index == null) {
+                            // NAC index may be read by loads with any index
+                            buckets.values().forEach(loads -> loads.forEach(this.solver::addWorkList));
+                        } else {
+                            buckets.getOrDefault(index, Set.of()).forEach(this.solver::addWorkList);
+                            buckets.getOrDefault(null, Set.of()).forEach(this.solver::addWorkList);
+                        }
                     }
                 }
             }
@@ -263,27 +379,23 @@ public class InterConstantPropagation extends
 
     @Override
     protected CPFact transferCallToReturnEdge(CallToReturnEdge<Stmt> edge, CPFact out) {
-        CPFact outTmp = out.copy();
         Optional<LValue> def = edge.getSource().getDef();
-        if(def.isPresent()) {
-            if(def.get() instanceof Var var) {
-                outTmp.remove(var);
-            }
+        if(def.isPresent() && def.get() instanceof Var var && !out.get(var).isUndef()) {
+            return new FactWithout(out, var);
         }
-
-        return outTmp;
+        // nothing to kill, the caller's fact can be met as is
+        return out;
     }
 
     @Override
     protected CPFact transferCallEdge(CallEdge<Stmt> edge, CPFact callSiteOut) {
-        CPFact outTmp = callSiteOut.copy();
         CPFact cpFact = new CPFact();
 
         List<Var> params = edge.getCallee().getIR().getParams();
         if(edge.getSource() instanceof Invoke invokeStmt) {
             List<Var> args = invokeStmt.getInvokeExp().getArgs();
             for (int i = 0; i<params.size(); i++) {
-                cpFact.update(params.get(i), outTmp.get(args.get(i)));
+                cpFact.update(params.get(i), callSiteOut.get(args.get(i)));
             }
         }
         return cpFact;
@@ -310,3 +422,138 @@ public class InterConstantPropagation extends
         return cpFact;
     }
 }
+
+/**
+ * Read-only view of a fact minus one variable, i.e., the variable is UNDEF
+ * in the view. It reads through to the underlying fact without copying it,
+ * and is meant to be consumed by {@link InterConstantPropagation#meetInto}.
+ * The backing map inherited from {@link CPFact} is never used, so every
+ * read method is overridden, and every write method throws.
+ */
+class FactWithout extends CPFact {
+
+    private final CPFact fact;
+
+    private final Var killed;
+
+    FactWithout(CPFact fact, Var killed) {
+        this.fact = fact;
+        this.killed = killed;
+    }
+
+    @Override
+    public Value get(Var key) {
+        return key.equals(killed) ? Value.getUndef() : fact.get(key);
+    }
+
+    @Override
+    public Stream<Map.Entry<Var, Value>> entries() {
+        return fact.entries().filter(entry -> !entry.getKey().equals(killed));
+    }
+
+    @Override
+    public void forEach(BiConsumer<Var, Value> action) {
+        fact.forEach((var, value) -> {
+            if (!var.equals(killed)) {
+                action.accept(var, value);
+            }
+        });
+    }
+
+    @Override
+    public Set<Var> keySet() {
+        Set<Var> keys = fact.keySet();
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object o) {
+                return !killed.equals(o) && keys.contains(o);
+            }
+
+            @Override
+            public Iterator<Var> iterator() {
+                return keys.stream().filter(var -> !var.equals(killed)).iterator();
+            }
+
+            @Override
+            public int size() {
+                return keys.contains(killed) ? keys.size() - 1 : keys.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Value> values() {
+        Set<Var> keys = keySet();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Value> iterator() {
+                return keys.stream().map(fact::get).iterator();
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keySet().isEmpty();
+    }
+
+    @Override
+    public boolean update(Var key, Value value) {
+        throw new UnsupportedOperationException("FactWithout is read-only");
+    }
+
+    @Override
+    public Value remove(Var key) {
+        throw new UnsupportedOperationException("FactWithout is read-only");
+    }
+
+    @Override
+    public boolean copyFrom(MapFact<Var, Value> fact) {
+        throw new UnsupportedOperationException("FactWithout is read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("FactWithout is read-only");
+    }
+
+    @Override
+    public CPFact copy() {
+        CPFact copy = fact.copy();
+        copy.remove(killed);
+        return copy;
+    }
+
+    /**
+     * Equal to any fact with the same entries, like the facts it stands for.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CPFact other)) {
+            return false;
+        }
+        Set<Var> keys = keySet();
+        return keys.size() == other.keySet().size()
+                && keys.stream().allMatch(var -> fact.get(var).equals(other.get(var)));
+    }
+
+    @Override
+    public int hashCode() {
+        // same as the hash code of the map of entries
+        return entries().mapToInt(Map.Entry::hashCode).sum();
+    }
+
+    @Override
+    public String toString() {
+        return entries().map(Object::toString)
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+}
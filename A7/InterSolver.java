@@ -25,8 +25,10 @@ package pascal.taie.analysis.dataflow.inter;
 import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
 import pascal.taie.analysis.dataflow.analysis.constprop.Value;
 import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.graph.icfg.CallEdge;
 import pascal.taie.analysis.graph.icfg.ICFG;
 import pascal.taie.analysis.graph.icfg.ICFGEdge;
+import pascal.taie.analysis.graph.icfg.ReturnEdge;
 import pascal.taie.analysis.pta.PointerAnalysisResult;
 import pascal.taie.ir.exp.InstanceFieldAccess;
 import pascal.taie.ir.exp.Var;
@@ -36,6 +38,7 @@ import pascal.taie.util.collection.SetQueue;
 import soot.jimple.internal.AbstractNewArrayExpr;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -51,14 +54,15 @@ class InterSolver<Method, Node, Fact> {
 
     private DataflowResult<Node, Fact> result;
 
-    private Queue<Node> workList;
+    private NodeWorkList<Method, Node> workList;
+
+    private Set<Node> entryNodes;
 
 
     InterSolver(InterDataflowAnalysis<Node, Fact> analysis,
                 ICFG<Method, Node> icfg) {
         this.analysis = analysis;
         this.icfg = icfg;
-        this.workList = new ArrayDeque<>();
     }
 
     public DataflowResult<Node, Fact> getResult() {
@@ -73,7 +77,8 @@ class InterSolver<Method, Node, Fact> {
     }
 
     private void initialize() {
-        List<Node> entryNodes = icfg.entryMethods().map(icfg::getEntryOf).toList();
+        entryNodes = icfg.entryMethods().map(icfg::getEntryOf).collect(Collectors.toSet());
+        workList = new NodeWorkList<>(icfg);
         for (Node node :
                 icfg) {
             if(entryNodes.contains(node)) {
@@ -86,13 +91,59 @@ class InterSolver<Method, Node, Fact> {
 
     }
 
-    private void doSolve() {
-
-        for(Node node : icfg) {
+    /**
+     * Updates the result of the last {@link #solve()} after nodes and edges
+     * are added to the ICFG, e.g., new call edges or new entry methods.
+     * The previous result is kept as the starting point, and only the added
+     * nodes, the targets of added edges and their dependents are re-analyzed.
+     *
+     * @param addedNodes nodes added to the ICFG since last solve/update
+     * @param addedEdges edges added to the ICFG since last solve/update
+     * @return the updated result
+     */
+    DataflowResult<Node, Fact> update(Collection<Node> addedNodes,
+                                      Collection<ICFGEdge<Node>> addedEdges) {
+        if (result == null) {
+            return solve();
+        }
+        Set<Node> oldEntryNodes = entryNodes;
+        entryNodes = icfg.entryMethods().map(icfg::getEntryOf).collect(Collectors.toSet());
+        if (!addedNodes.isEmpty()) {
+            workList = new NodeWorkList<>(icfg);
+        }
+        for (Node node : addedNodes) {
+            if (entryNodes.contains(node)) {
+                result.setOutFact(node, analysis.newBoundaryFact(node));
+            } else {
+                result.setInFact(node, analysis.newInitialFact());
+                result.setOutFact(node, analysis.newInitialFact());
+            }
             workList.add(node);
         }
+        for (Node node : entryNodes) {
+            if (!oldEntryNodes.contains(node) && !addedNodes.contains(node)) {
+                // existing method becomes an entry, its entry keeps the facts
+                // from its callers and gets the boundary fact as well
+                Fact outFact = result.getOutFact(node);
+                analysis.meetInto(analysis.newBoundaryFact(node), outFact);
+                result.setOutFact(node, outFact);
+                icfg.getOutEdgesOf(node).forEach(edge -> workList.add(edge.getTarget()));
+            }
+        }
+        for (ICFGEdge<Node> edge : addedEdges) {
+            workList.add(edge.getTarget());
+        }
+        propagate();
+        return result;
+    }
+
+    private void doSolve() {
+        workList.getNodes().forEach(workList::add);
+        propagate();
+    }
+
+    private void propagate() {
         Fact inFact, outFact;
-        List<Node> entryNodes = icfg.entryMethods().map(icfg::getEntryOf).toList();
 
         while(!workList.isEmpty()) {
             Node node = workList.poll();
@@ -127,3 +178,187 @@ class InterSolver<Method, Node, Fact> {
         workList.add(node);
     }
 }
+
+/**
+ * Work-list of ICFG nodes. Nodes are numbered by method-level reverse
+ * postorder over the SCCs of the call graph (callers before callees),
+ * and by reverse postorder inside each method. The node with the smallest
+ * ordinal is always polled first, and membership is kept in a bitset,
+ * so a node is never queued twice.
+ */
+class NodeWorkList<Method, Node> {
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    private final Map<Node, Integer> ordinals = new HashMap<>();
+
+    private final PriorityQueue<Integer> queue = new PriorityQueue<>();
+
+    private final BitSet inQueue = new BitSet();
+
+    NodeWorkList(ICFG<Method, Node> icfg) {
+        Map<Method, List<Node>> methodNodes = new LinkedHashMap<>();
+        for (Node node : icfg) {
+            methodNodes.computeIfAbsent(icfg.getContainingMethodOf(node),
+                    m -> new ArrayList<>()).add(node);
+        }
+        Map<Method, Set<Method>> callees = new HashMap<>();
+        methodNodes.forEach((method, mNodes) -> {
+            Set<Method> mCallees = new LinkedHashSet<>();
+            for (Node node : mNodes) {
+                if (icfg.isCallSite(node)) {
+                    mCallees.addAll(icfg.getCalleesOf(node));
+                }
+            }
+            callees.put(method, mCallees);
+        });
+        List<Method> roots = new ArrayList<>(icfg.entryMethods().toList());
+        roots.addAll(methodNodes.keySet());
+        List<List<Method>> sccs = SCCFinder.find(roots,
+                m -> callees.getOrDefault(m, Set.of()));
+        // Tarjan gives reverse topological order, so callers come last
+        for (int i = sccs.size() - 1; i >= 0; --i) {
+            for (Method method : sccs.get(i)) {
+                List<Node> mNodes = methodNodes.get(method);
+                if (mNodes != null) {
+                    orderNodes(icfg, method, mNodes).forEach(node -> {
+                        ordinals.put(node, nodes.size());
+                        nodes.add(node);
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * @return nodes of the method in reverse postorder of its intra-procedural
+     * edges, nodes unreachable from the method entry are appended at the end.
+     */
+    private List<Node> orderNodes(ICFG<Method, Node> icfg, Method method, List<Node> mNodes) {
+        List<Node> postOrder = new ArrayList<>();
+        Set<Node> visited = new HashSet<>();
+        Deque<Map.Entry<Node, Iterator<ICFGEdge<Node>>>> stack = new ArrayDeque<>();
+        Node entry = icfg.getEntryOf(method);
+        visited.add(entry);
+        stack.push(Map.entry(entry, icfg.getOutEdgesOf(entry).iterator()));
+        while (!stack.isEmpty()) {
+            Iterator<ICFGEdge<Node>> it = stack.peek().getValue();
+            if (it.hasNext()) {
+                ICFGEdge<Node> edge = it.next();
+                Node target = edge.getTarget();
+                if (!(edge instanceof CallEdge) && !(edge instanceof ReturnEdge)
+                        && visited.add(target)) {
+                    stack.push(Map.entry(target, icfg.getOutEdgesOf(target).iterator()));
+                }
+            } else {
+                postOrder.add(stack.pop().getKey());
+            }
+        }
+        Collections.reverse(postOrder);
+        for (Node node : mNodes) {
+            if (visited.add(node)) {
+                postOrder.add(node);
+            }
+        }
+        return postOrder;
+    }
+
+    /**
+     * Adds a node to the work-list if it is not queued yet.
+     *
+     * @return true if the node is newly added.
+     */
+    boolean add(Node node) {
+        int ordinal = ordinals.get(node);
+        if (inQueue.get(ordinal)) {
+            return false;
+        }
+        inQueue.set(ordinal);
+        queue.add(ordinal);
+        return true;
+    }
+
+    Node poll() {
+        int ordinal = queue.poll();
+        inQueue.clear(ordinal);
+        return nodes.get(ordinal);
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * @return all nodes in the order of their ordinals.
+     */
+    List<Node> getNodes() {
+        return nodes;
+    }
+}
+
+/**
+ * Iterative Tarjan's algorithm for strongly connected components.
+ */
+final class SCCFinder {
+
+    private SCCFinder() {
+    }
+
+    /**
+     * Finds the SCCs reachable from given roots.
+     *
+     * @return the SCCs in reverse topological order, i.e., every SCC comes
+     * after all SCCs reachable from it.
+     */
+    static <N> List<List<N>> find(Iterable<N> roots, Function<N, ? extends Collection<N>> succs) {
+        Map<N, Integer> index = new HashMap<>();
+        Map<N, Integer> lowLink = new HashMap<>();
+        Deque<N> stack = new ArrayDeque<>();
+        Set<N> onStack = new HashSet<>();
+        Deque<Map.Entry<N, Iterator<N>>> callStack = new ArrayDeque<>();
+        List<List<N>> sccs = new ArrayList<>();
+        for (N root : roots) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            callStack.push(Map.entry(root, succs.apply(root).iterator()));
+            while (!callStack.isEmpty()) {
+                N node = callStack.peek().getKey();
+                Iterator<N> it = callStack.peek().getValue();
+                if (it.hasNext()) {
+                    N succ = it.next();
+                    if (!index.containsKey(succ)) {
+                        index.put(succ, index.size());
+                        lowLink.put(succ, index.get(succ));
+                        stack.push(succ);
+                        onStack.add(succ);
+                        callStack.push(Map.entry(succ, succs.apply(succ).iterator()));
+                    } else if (onStack.contains(succ)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(succ)));
+                    }
+                } else {
+                    callStack.pop();
+                    if (!callStack.isEmpty()) {
+                        N parent = callStack.peek().getKey();
+                        lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                    }
+                    if (lowLink.get(node).equals(index.get(node))) {
+                        List<N> scc = new ArrayList<>();
+                        N member;
+                        do {
+                            member = stack.pop();
+                            onStack.remove(member);
+                            scc.add(member);
+                        } while (!member.equals(node));
+                        sccs.add(scc);
+                    }
+                }
+            }
+        }
+        return sccs;
+    }
+}
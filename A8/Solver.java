@@ -54,8 +54,26 @@ import pascal.taie.ir.stmt.StmtVisitor;
 import pascal.taie.ir.stmt.StoreField;
 import pascal.taie.language.classes.JMethod;
 import pascal.taie.language.type.Type;
-
+import pascal.taie.util.AnalysisException;
+
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class Solver {
 
@@ -73,7 +91,55 @@ public class Solver {
 
     private PointerFlowGraph pointerFlowGraph;
 
-    private WorkList workList;
+    private CoalescingWorkList workList;
+
+    private SolverMetrics metrics;
+
+    /**
+     * Time spent in the methods made reachable while processing the current
+     * statement, subtracted from its own time in the metrics.
+     */
+    private long nestedReachableNanos;
+
+    /**
+     * Budgets are checked once per so many polls.
+     */
+    private static final int POLLS_PER_BUDGET_CHECK = 4096;
+
+    private long polls;
+
+    /**
+     * Wall-clock deadline in nanos, from option "time-budget" (seconds).
+     * Past it, contexts created from then on are (partly) context-insensitive,
+     * the analysis is not stopped, see {@link #checkBudgets}.
+     */
+    private long deadline;
+
+    private long timeBudget;
+
+    /**
+     * Heap budget in bytes, from option "heap-budget" (MB). Past it, contexts
+     * created from then on are (partly) context-insensitive, which does not
+     * free the existing ones, and the analysis fails if that is not enough,
+     * see {@link #checkBudgets}.
+     */
+    private long heapBudget;
+
+    /**
+     * Methods analyzed context-insensitively after a budget is exceeded.
+     */
+    private Set<JMethod> ciMethods;
+
+    /**
+     * Whether all methods are analyzed context-insensitively.
+     */
+    private boolean allCI;
+
+    /**
+     * End of the grace period after the first time a budget is exceeded,
+     * 0 if no budget has been exceeded.
+     */
+    private long graceEnd;
 
     private TaintAnalysiss taintAnalysis;
 
@@ -102,13 +168,51 @@ public class Solver {
         initialize();
         analyze();
         taintAnalysis.onFinish();
+        writeSnapshot();
+    }
+
+    /**
+     * Writes the points-to result to the file given by option "pta-snapshot",
+     * so that downstream analyses can read it without re-running the analysis.
+     * The snapshot is context-insensitive, the sets of heap pointers are
+     * merged over the heap contexts of their objects.
+     */
+    private void writeSnapshot() {
+        String snapshot = options.getString("pta-snapshot");
+        if(snapshot != null) {
+            PointerAnalysisResult result = getResult();
+            PointsToSnapshot.Heap heap = new PointsToSnapshot.Heap();
+            result.getStaticFields().forEach(field -> heap.addStaticField(
+                    field.getField(), objectsOf(field.getPointsToSet())));
+            result.getInstanceFields().forEach(field -> heap.addInstanceField(
+                    field.getBase().getObject(), field.getField(),
+                    objectsOf(field.getPointsToSet())));
+            result.getArrayIndexes().forEach(index -> heap.addArrayIndex(
+                    index.getArray().getObject(), objectsOf(index.getPointsToSet())));
+            PointsToSnapshot.write(Paths.get(snapshot), result.getVars(),
+                    result::getPointsToSet, heap, result.getCallGraph());
+        }
+    }
+
+    private static List<Obj> objectsOf(PointsToSet pts) {
+        return pts.objects().map(CSObj::getObject).toList();
     }
 
     private void initialize() {
         csManager = new MapBasedCSManager();
         callGraph = new CSCallGraph(csManager);
         pointerFlowGraph = new PointerFlowGraph();
-        workList = new WorkList();
+        metrics = new SolverMetrics(logger, "cs");
+        timeBudget = budgetOption("time-budget", 1_000_000_000L);
+        deadline = timeBudget == Long.MAX_VALUE ?
+                Long.MAX_VALUE : System.nanoTime() + timeBudget;
+        heapBudget = budgetOption("heap-budget", 1024L * 1024L);
+        ciMethods = new HashSet<>();
+        allCI = false;
+        graceEnd = 0;
+        workList = new CoalescingWorkList(
+                CoalescingWorkList.Order.of(options.getString("worklist-order")),
+                pointerFlowGraph::getSuccsOf);
         taintAnalysis = new TaintAnalysiss(this);
         // process program entry, i.e., main method
         Context defContext = contextSelector.getEmptyContext();
@@ -123,11 +227,19 @@ public class Solver {
      */
     private void addReachable(CSMethod csMethod) {
         if(!callGraph.contains(csMethod)) {
+            long reachableStart = System.nanoTime();
             callGraph.addReachableMethod(csMethod);
             csMethod.getMethod().getIR().forEach(stmt -> {
                 StmtProcessor stmtProcessor = new StmtProcessor(csMethod);
+                long outerNanos = nestedReachableNanos;
+                nestedReachableNanos = 0;
+                long start = System.nanoTime();
                 stmt.accept(stmtProcessor);
+                // the statements of the callees are timed on their own
+                metrics.onStmt(stmt.getClass(), System.nanoTime() - start - nestedReachableNanos);
+                nestedReachableNanos = outerNanos;
             });
+            nestedReachableNanos += System.nanoTime() - reachableStart;
         }
     }
 
@@ -148,7 +260,7 @@ public class Solver {
         @Override
         public Void visit(New stmt) {
             Obj obj = heapModel.getObj(stmt);
-            Context heapContext = contextSelector.selectHeapContext(csMethod, obj);
+            Context heapContext = selectHeapContext(csMethod, obj);
             workList.addEntry(csManager.getCSVar(context, stmt.getLValue()), PointsToSetFactory.make(csManager.getCSObj(heapContext, obj)));
             return null;
         }
@@ -190,19 +302,103 @@ public class Solver {
     private void addPFGEdge(Pointer source, Pointer target) {
         if(!pointerFlowGraph.getSuccsOf(source).contains(target)) {
             pointerFlowGraph.addEdge(source, target);
+            metrics.onNewEdge();
             if(!source.getPointsToSet().isEmpty()) {
                 workList.addEntry(target, source.getPointsToSet());
             }
         }
     }
 
+    private long budgetOption(String key, long unit) {
+        return options.get(key) instanceof Number budget && budget.longValue() > 0 ?
+                budget.longValue() * unit : Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks the time and heap budgets. When a budget is exceeded, the methods
+     * analyzed in the most contexts are switched to context-insensitive
+     * handling, and all methods are if it is still exceeded after a grace
+     * period. Choosing contexts never affects soundness, but it only applies
+     * to the contexts created from then on, the existing contexts and their
+     * points-to sets are kept, so a switch slows down the growth of the
+     * analysis rather than shrinking it.
+     * <p>
+     * The time budget only triggers the switches, and the degraded analysis
+     * runs to its end with a sound but less precise result. The heap budget
+     * is a hard limit: if it is still exceeded after all methods are switched
+     * and another grace period, the analysis fails with an
+     * {@link AnalysisException} instead of running out of memory.
+     */
+    private void checkBudgets() {
+        if(++polls % POLLS_PER_BUDGET_CHECK != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if(now < graceEnd) {
+            return;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        boolean overHeap = usedHeap >= heapBudget;
+        if(now < deadline && !overHeap) {
+            return;
+        }
+        if(graceEnd == 0) {
+            Map<JMethod, Long> contextCounts = callGraph.reachableMethods()
+                    .collect(Collectors.groupingBy(CSMethod::getMethod, Collectors.counting()));
+            contextCounts.entrySet()
+                    .stream()
+                    .filter(e -> e.getValue() > 1)
+                    .sorted(Map.Entry.<JMethod, Long>comparingByValue().reversed())
+                    .limit(Math.max(1, contextCounts.size() / 10))
+                    .forEach(e -> ciMethods.add(e.getKey()));
+            allCI = ciMethods.isEmpty();
+            logger.warn("Budget exceeded (used heap {} MB), analyzing {} methods context-insensitively",
+                    usedHeap / (1024 * 1024), allCI ? "all" : ciMethods.size());
+        } else if(!allCI) {
+            allCI = true;
+            logger.warn("Budget still exceeded, analyzing all methods context-insensitively");
+        } else if(overHeap) {
+            throw new AnalysisException(String.format(
+                    "Pointer analysis exceeded its heap budget (used heap %d MB of %d MB)"
+                            + " even after switching all methods to context-insensitive handling",
+                    usedHeap / (1024 * 1024), heapBudget / (1024 * 1024)));
+        } else {
+            // only the time budget is exceeded, the degraded analysis finishes
+            return;
+        }
+        graceEnd = now + (timeBudget == Long.MAX_VALUE ? 10_000_000_000L : timeBudget / 4);
+    }
+
+    private Context selectContext(CSCallSite csCallSite, JMethod callee) {
+        return isCI(callee) ? contextSelector.getEmptyContext() :
+                contextSelector.selectContext(csCallSite, callee);
+    }
+
+    private Context selectContext(CSCallSite csCallSite, CSObj recv, JMethod callee) {
+        return isCI(callee) ? contextSelector.getEmptyContext() :
+                contextSelector.selectContext(csCallSite, recv, callee);
+    }
+
+    private Context selectHeapContext(CSMethod method, Obj obj) {
+        return isCI(method.getMethod()) ? contextSelector.getEmptyContext() :
+                contextSelector.selectHeapContext(method, obj);
+    }
+
+    private boolean isCI(JMethod method) {
+        return allCI || ciMethods.contains(method);
+    }
+
     /**
      * Processes work-list entries until the work-list is empty.
      */
     private void analyze() {
         while(!workList.isEmpty()) {
-            WorkList.Entry entry = workList.pollEntry();
+            metrics.onPoll(workList.size());
+            checkBudgets();
+            CoalescingWorkList.Entry entry = workList.pollEntry();
             PointsToSet delta = propagate(entry.pointer(), entry.pointsToSet());
+            metrics.onPropagate(delta.size());
             PointsToSet taint = taintAnalysis.propagate(entry.pointer(), entry.pointsToSet());
             delta.addAll(taint);
 
@@ -217,7 +413,29 @@ public class Solver {
                 });
             }
         }
-        System.out.println('s');
+        finishMetrics();
+    }
+
+    /**
+     * Logs the metrics of this run, and writes the JSON report to
+     * the file given by option "metrics-report" if it is set.
+     */
+    private void finishMetrics() {
+        metrics.put("reachableMethods", callGraph.reachableMethods().count());
+        metrics.put("contexts", callGraph.reachableMethods()
+                .map(CSMethod::getContext)
+                .distinct()
+                .count());
+        metrics.put("csVars", csManager.getCSVars().size());
+        IntStream ptsSizes = csManager.getCSVars()
+                .stream()
+                .mapToInt(csVar -> csVar.getPointsToSet().size());
+        String reportPath = options.getString("metrics-report");
+        if(reportPath != null) {
+            metrics.finish(ptsSizes, Paths.get(reportPath));
+        } else {
+            metrics.finish(ptsSizes);
+        }
     }
 
     /**
@@ -260,9 +478,9 @@ public class Solver {
             CSCallSite csCallSite = csManager.getCSCallSite(c, callSite);
             Context ct;
             if(recvObj == null) {
-                ct = contextSelector.selectContext(csCallSite, jMethod);
+                ct = selectContext(csCallSite, jMethod);
             } else {
-                ct = contextSelector.selectContext(csCallSite, recvObj, jMethod);
+                ct = selectContext(csCallSite, recvObj, jMethod);
                 workList.addEntry(csManager.getCSVar(ct, jMethod.getIR().getThis()), PointsToSetFactory.make(recvObj));
             }
             CSMethod csMethod = csManager.getCSMethod(ct, jMethod);
@@ -320,3 +538,240 @@ public class Solver {
         return result;
     }
 }
+
+/**
+ * Work-list which keeps one pending points-to set per pointer, so the
+ * entries added for a pointer before it is polled are propagated at once.
+ * The order in which pending pointers are polled is pluggable.
+ */
+class CoalescingWorkList {
+
+    record Entry(Pointer pointer, PointsToSet pointsToSet) {
+    }
+
+    /**
+     * Orders of polling the pending pointers.
+     */
+    enum Order {
+        /**
+         * First added, first polled.
+         */
+        FIFO,
+        /**
+         * Upstream pointers first, by topological order of the condensation
+         * of the PFG, which is recomputed as the PFG grows.
+         */
+        TOPO,
+        /**
+         * The pointer polled least recently first.
+         */
+        LRF,
+        /**
+         * The pointers pending at the start of a wave are polled in
+         * topological order, pointers added after them wait for the next wave.
+         * The ranks are recomputed as for TOPO, the pointers not ranked yet
+         * are polled last.
+         */
+        WAVE;
+
+        static Order of(String name) {
+            if (name == null) {
+                return FIFO;
+            }
+            for (Order order : values()) {
+                if (order.name().equalsIgnoreCase(name)) {
+                    return order;
+                }
+            }
+            throw new AnalysisException("Unknown worklist-order '" + name
+                    + "', expected one of " + Arrays.toString(values()));
+        }
+    }
+
+    private final Order order;
+
+    private final Function<Pointer, ? extends Collection<Pointer>> succs;
+
+    /**
+     * Pointer -> union of its pending points-to sets.
+     */
+    private final Map<Pointer, PointsToSet> pending = new HashMap<>();
+
+    private final Queue<Pointer> queue;
+
+    private final Map<Pointer, Long> addedAt = new HashMap<>();
+
+    private final Map<Pointer, Long> firedAt = new HashMap<>();
+
+    private long clock;
+
+    private Map<Pointer, Integer> ranks = Map.of();
+
+    private int pollsSinceRanking;
+
+    /**
+     * @param order the order of polling pointers
+     * @param succs the PFG successors of a pointer, used by topological orders
+     */
+    CoalescingWorkList(Order order,
+                       Function<Pointer, ? extends Collection<Pointer>> succs) {
+        this.order = order;
+        this.succs = succs;
+        this.queue = switch (order) {
+            case FIFO, WAVE -> new ArrayDeque<>();
+            case TOPO -> new PriorityQueue<>(
+                    Comparator.comparingInt(this::rankOf)
+                            .thenComparingLong(addedAt::get));
+            case LRF -> new PriorityQueue<>(
+                    Comparator.comparingLong((Pointer p) -> firedAt.getOrDefault(p, -1L))
+                            .thenComparingLong(addedAt::get));
+        };
+    }
+
+    void addEntry(Pointer pointer, PointsToSet pointsToSet) {
+        PointsToSet pts = pending.get(pointer);
+        if (pts == null) {
+            // always union into a set of our own, pointsToSet may be shared
+            pts = PointsToSetFactory.make();
+            pending.put(pointer, pts);
+            addedAt.put(pointer, clock++);
+            if (order != Order.WAVE) {
+                queue.add(pointer);
+            }
+        }
+        pts.addAll(pointsToSet);
+    }
+
+    Entry pollEntry() {
+        if (order == Order.WAVE) {
+            ++pollsSinceRanking;
+            if (queue.isEmpty()) {
+                startWave();
+            }
+        } else if (order == Order.TOPO && ++pollsSinceRanking > ranks.size()) {
+            rerank();
+            List<Pointer> pointers = new ArrayList<>(queue);
+            queue.clear();
+            queue.addAll(pointers);
+        }
+        Pointer pointer = queue.poll();
+        addedAt.remove(pointer);
+        if (order == Order.LRF) {
+            firedAt.put(pointer, clock++);
+        }
+        return new Entry(pointer, pending.remove(pointer));
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private void startWave() {
+        if (pollsSinceRanking > ranks.size()) {
+            rerank();
+        }
+        pending.keySet()
+                .stream()
+                .sorted(Comparator.comparingInt(this::rankOf)
+                        .thenComparingLong(addedAt::get))
+                .forEach(queue::add);
+    }
+
+    /**
+     * Re-ranks the pending pointers, once per |ranked pointers| polls,
+     * so the cost of ranking is amortized linear.
+     */
+    private void rerank() {
+        ranks = computeRanks(pending.keySet());
+        pollsSinceRanking = 0;
+    }
+
+    private int rankOf(Pointer pointer) {
+        return ranks.getOrDefault(pointer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Ranks the pointers reachable from roots in the PFG, so that
+     * a pointer ranks before all pointers in the SCCs reachable from it.
+     */
+    private Map<Pointer, Integer> computeRanks(Collection<Pointer> roots) {
+        List<List<Pointer>> sccs = SCCFinder.find(List.copyOf(roots), succs);
+        Map<Pointer, Integer> result = new HashMap<>();
+        for (int i = 0; i < sccs.size(); ++i) {
+            int rank = sccs.size() - 1 - i;
+            sccs.get(i).forEach(p -> result.put(p, rank));
+        }
+        return result;
+    }
+}
+
+/**
+ * Iterative Tarjan's algorithm for strongly connected components.
+ */
+final class SCCFinder {
+
+    private SCCFinder() {
+    }
+
+    /**
+     * Finds the SCCs reachable from given roots.
+     *
+     * @return the SCCs in reverse topological order, i.e., every SCC comes
+     * after all SCCs reachable from it.
+     */
+    static <N> List<List<N>> find(Iterable<N> roots, Function<N, ? extends Collection<N>> succs) {
+        Map<N, Integer> index = new HashMap<>();
+        Map<N, Integer> lowLink = new HashMap<>();
+        Deque<N> stack = new ArrayDeque<>();
+        Set<N> onStack = new HashSet<>();
+        Deque<Map.Entry<N, Iterator<N>>> callStack = new ArrayDeque<>();
+        List<List<N>> sccs = new ArrayList<>();
+        for (N root : roots) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            callStack.push(Map.entry(root, succs.apply(root).iterator()));
+            while (!callStack.isEmpty()) {
+                N node = callStack.peek().getKey();
+                Iterator<N> it = callStack.peek().getValue();
+                if (it.hasNext()) {
+                    N succ = it.next();
+                    if (!index.containsKey(succ)) {
+                        index.put(succ, index.size());
+                        lowLink.put(succ, index.get(succ));
+                        stack.push(succ);
+                        onStack.add(succ);
+                        callStack.push(Map.entry(succ, succs.apply(succ).iterator()));
+                    } else if (onStack.contains(succ)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(succ)));
+                    }
+                } else {
+                    callStack.pop();
+                    if (!callStack.isEmpty()) {
+                        N parent = callStack.peek().getKey();
+                        lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                    }
+                    if (lowLink.get(node).equals(index.get(node))) {
+                        List<N> scc = new ArrayList<>();
+                        N member;
+                        do {
+                            member = stack.pop();
+                            onStack.remove(member);
+                            scc.add(member);
+                        } while (!member.equals(node));
+                        sccs.add(scc);
+                    }
+                }
+            }
+        }
+        return sccs;
+    }
+}
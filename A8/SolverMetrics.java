@@ -0,0 +1,258 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.cs;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.util.AnalysisException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Progress and metrics of a pointer analysis solver. The solver reports
+ * work-list polls, propagations, PFG edges and statement processing time,
+ * the metrics are exported as periodic log lines and JFR events, and
+ * summarized in a JSON report when the solver finishes.
+ */
+public final class SolverMetrics {
+
+    /**
+     * Interval of periodic samples.
+     */
+    private static final long SAMPLE_INTERVAL_NANOS = 10_000_000_000L;
+
+    /**
+     * The clock is checked once per so many polls.
+     */
+    private static final int POLLS_PER_CHECK = 1024;
+
+    private final Logger logger;
+
+    private final String solverName;
+
+    private final long startTime = System.nanoTime();
+
+    private long lastSample = startTime;
+
+    private long polls;
+
+    private long propagations;
+
+    private long deltaObjects;
+
+    private long maxDelta;
+
+    private long pfgEdges;
+
+    private int maxWorkList;
+
+    /**
+     * Delta size histogram, bucket i counts deltas of size in [2^(i-1), 2^i).
+     */
+    private final long[] deltaHistogram = new long[32];
+
+    /**
+     * Statement kind -> [count, nanos].
+     */
+    private final Map<String, long[]> stmtTimes = new TreeMap<>();
+
+    private final Map<String, Object> report = new LinkedHashMap<>();
+
+    public SolverMetrics(Logger logger, String solverName) {
+        this.logger = logger;
+        this.solverName = solverName;
+    }
+
+    /**
+     * Called when the solver polls the work-list.
+     */
+    public void onPoll(int workListSize) {
+        ++polls;
+        maxWorkList = Math.max(maxWorkList, workListSize);
+        if (polls % POLLS_PER_CHECK == 0) {
+            long now = System.nanoTime();
+            if (now - lastSample >= SAMPLE_INTERVAL_NANOS) {
+                lastSample = now;
+                sample(workListSize, now);
+            }
+        }
+    }
+
+    /**
+     * Called when a points-to set is propagated.
+     *
+     * @param deltaSize number of objects newly added by the propagation
+     */
+    public void onPropagate(int deltaSize) {
+        ++propagations;
+        deltaObjects += deltaSize;
+        maxDelta = Math.max(maxDelta, deltaSize);
+        ++deltaHistogram[bucketOf(deltaSize)];
+    }
+
+    public void onNewEdge() {
+        ++pfgEdges;
+    }
+
+    /**
+     * Called when a statement of a new reachable method is processed.
+     */
+    public void onStmt(Class<?> stmtKind, long nanos) {
+        long[] counter = stmtTimes.computeIfAbsent(
+                stmtKind.getSimpleName(), k -> new long[2]);
+        ++counter[0];
+        counter[1] += nanos;
+    }
+
+    /**
+     * Adds a solver specific statistic to the final report.
+     */
+    public void put(String key, Object value) {
+        report.put(key, value);
+    }
+
+    /**
+     * Finishes the metrics, logs the summary and returns the JSON report.
+     *
+     * @param ptsSizes sizes of the points-to sets of all variables
+     */
+    public String finish(IntStream ptsSizes) {
+        long elapsed = System.nanoTime() - startTime;
+        long[] ptsHistogram = new long[32];
+        ptsSizes.forEach(size -> ++ptsHistogram[bucketOf(size)]);
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("solver", solverName);
+        json.put("elapsedMillis", elapsed / 1_000_000);
+        json.put("polls", polls);
+        json.put("maxWorkList", maxWorkList);
+        json.put("propagations", propagations);
+        json.put("deltaObjects", deltaObjects);
+        json.put("maxDelta", maxDelta);
+        json.put("pfgEdges", pfgEdges);
+        json.putAll(report);
+        json.put("deltaHistogram", histogram(deltaHistogram));
+        json.put("ptsHistogram", histogram(ptsHistogram));
+        Map<String, Object> stmts = new LinkedHashMap<>();
+        stmtTimes.forEach((kind, counter) -> stmts.put(kind, Map.of(
+                "count", counter[0], "millis", counter[1] / 1_000_000)));
+        json.put("stmtTimes", stmts);
+        sample(0, System.nanoTime());
+        logger.info("[{}] finished in {} ms, {} propagations, {} PFG edges",
+                solverName, elapsed / 1_000_000, propagations, pfgEdges);
+        return toJson(json);
+    }
+
+    /**
+     * Finishes the metrics and writes the JSON report to given path.
+     */
+    public void finish(IntStream ptsSizes, Path reportPath) {
+        String json = finish(ptsSizes);
+        try {
+            Files.writeString(reportPath, json);
+        } catch (IOException e) {
+            throw new AnalysisException("Failed to write metrics report to " + reportPath, e);
+        }
+    }
+
+    private void sample(int workListSize, long now) {
+        logger.info("[{}] {} s: work-list {}, {} polls, {} propagations, {} delta objects, {} PFG edges",
+                solverName, (now - startTime) / 1_000_000_000, workListSize,
+                polls, propagations, deltaObjects, pfgEdges);
+        ProgressEvent event = new ProgressEvent();
+        if (event.shouldCommit()) {
+            event.solver = solverName;
+            event.workListSize = workListSize;
+            event.polls = polls;
+            event.propagations = propagations;
+            event.deltaObjects = deltaObjects;
+            event.pfgEdges = pfgEdges;
+            event.commit();
+        }
+    }
+
+    private static int bucketOf(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * @return non-empty buckets, keyed by their lower bounds.
+     */
+    private static Map<String, Object> histogram(long[] buckets) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; ++i) {
+            if (buckets[i] > 0) {
+                result.put(String.valueOf(i == 0 ? 0 : 1L << (i - 1)), buckets[i]);
+            }
+        }
+        return result;
+    }
+
+    private static String toJson(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return map.entrySet()
+                    .stream()
+                    .map(e -> toJson(e.getKey().toString()) + ":" + toJson(e.getValue()))
+                    .collect(Collectors.joining(",", "{", "}"));
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        } else {
+            return "\"" + value.toString()
+                    .replace("\\", "\\\\")
+                    .replace("\"", "\\\"") + "\"";
+        }
+    }
+
+    @Name("pascal.taie.pta.Progress")
+    @Label("Pointer Analysis Progress")
+    @Category("Tai-e")
+    static class ProgressEvent extends Event {
+
+        @Label("Solver")
+        String solver;
+
+        @Label("Work-list Size")
+        int workListSize;
+
+        @Label("Polls")
+        long polls;
+
+        @Label("Propagations")
+        long propagations;
+
+        @Label("Delta Objects")
+        long deltaObjects;
+
+        @Label("PFG Edges")
+        long pfgEdges;
+    }
+}